@@ -1,8 +1,12 @@
 package me.playgamesgo.packbox;
 
+import me.playgamesgo.packbox.commands.ActivateCommand;
+import me.playgamesgo.packbox.commands.CacheCommand;
 import me.playgamesgo.packbox.commands.DetectCommand;
+import me.playgamesgo.packbox.commands.FetchCommand;
 import me.playgamesgo.packbox.commands.InitCommand;
 import me.playgamesgo.packbox.commands.InstallCommand;
+import me.playgamesgo.packbox.commands.SyncCommand;
 import picocli.CommandLine;
 
 @CommandLine.Command(
@@ -13,7 +17,11 @@ import picocli.CommandLine;
         subcommands = {
                 InitCommand.class,
                 DetectCommand.class,
-                InstallCommand.class
+                InstallCommand.class,
+                SyncCommand.class,
+                FetchCommand.class,
+                ActivateCommand.class,
+                CacheCommand.class
         })
 public final class Main {
         public static void main(String[] args) {
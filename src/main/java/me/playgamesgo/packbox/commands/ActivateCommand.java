@@ -0,0 +1,78 @@
+package me.playgamesgo.packbox.commands;
+
+import lombok.extern.slf4j.Slf4j;
+import me.playgamesgo.packbox.utils.StateIndex;
+import me.playgamesgo.packbox.utils.generation.Generations;
+import org.jetbrains.annotations.Nullable;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.TerminalBuilder;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import picocli.CommandLine;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+@Slf4j
+@CommandLine.Command(
+        name = "activate",
+        description = "Switch the instance to a fetched generation"
+)
+public final class ActivateCommand implements Callable<Integer> {
+    @CommandLine.Parameters(arity = "0..1", paramLabel = "<generation>",
+            description = "Generation to activate, either the last fetched or the previous one (default: the last fetched one)")
+    @Nullable
+    private String generation;
+
+    @CommandLine.Option(names = {"--rollback"}, description = "Switch back to the generation that was active before")
+    private boolean rollback;
+
+    @Override
+    public Integer call() {
+        try (Terminal terminal = TerminalBuilder.builder().build()) {
+            Generations generations = Generations.open();
+            @Nullable String id = generation != null ? generation : rollback ? generations.getPrevious() : generations.getStaged();
+            if (id == null) {
+                AttributedStringBuilder builder = new AttributedStringBuilder();
+                if (rollback) {
+                    builder.append("No previous generation to roll back to", AttributedStyle.BOLD.foreground(AttributedStyle.RED));
+                } else {
+                    builder.append("Nothing staged, please run ", AttributedStyle.BOLD.foreground(AttributedStyle.RED))
+                            .append("packbox fetch", AttributedStyle.DEFAULT.foreground(AttributedStyle.RED))
+                            .append(" first.", AttributedStyle.DEFAULT.foreground(AttributedStyle.RED));
+                }
+                System.out.println(builder.toAnsi(terminal));
+                return 1;
+            }
+
+            StateIndex index = StateIndex.load();
+            List<String> left = generations.activate(id, index);
+            index.save();
+
+            AttributedStringBuilder builder = new AttributedStringBuilder();
+            builder.append("Activated generation ", AttributedStyle.BOLD)
+                    .append(id, AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN));
+            if (generations.getPrevious() != null) {
+                builder.append(", roll back with ", AttributedStyle.DEFAULT)
+                        .append("packbox activate --rollback", AttributedStyle.DEFAULT.foreground(AttributedStyle.CYAN));
+            }
+            System.out.println(builder.toAnsi(terminal));
+
+            if (!left.isEmpty()) {
+                AttributedStringBuilder warning = new AttributedStringBuilder();
+                warning.append(left.size() + " files not in the manifest were left in generation ", AttributedStyle.BOLD.foreground(AttributedStyle.YELLOW))
+                        .append(String.valueOf(generations.getPrevious()), AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW))
+                        .append(", it is kept until they are moved back or it is removed by hand:", AttributedStyle.BOLD.foreground(AttributedStyle.YELLOW));
+                System.out.println(warning.toAnsi(terminal));
+                for (String file : left) {
+                    System.out.println(new AttributedStringBuilder().append("  " + file, AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW)).toAnsi(terminal));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error activating generation", e);
+            return 1;
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,41 @@
+package me.playgamesgo.packbox.commands;
+
+import lombok.extern.slf4j.Slf4j;
+import me.playgamesgo.packbox.utils.ByteSize;
+import me.playgamesgo.packbox.utils.Storage;
+import me.playgamesgo.packbox.utils.download.ObjectCache;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.TerminalBuilder;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import picocli.CommandLine;
+
+import java.io.IOException;
+
+@Slf4j
+@CommandLine.Command(
+        name = "cache",
+        description = "Manage the shared download cache"
+)
+public final class CacheCommand {
+    @CommandLine.Command(name = "gc", description = "Evict least recently used files until the cache fits the size limit")
+    public int gc(@CommandLine.Option(names = {"-s", "--max-size"}, defaultValue = ObjectCache.DEFAULT_MAX_SIZE, converter = ByteSize.Converter.class,
+            description = "Maximum cache size, e.g. 500M or 10G (default: ${DEFAULT-VALUE})") long maxSize) {
+        try (Terminal terminal = TerminalBuilder.builder().build()) {
+            ObjectCache.GcResult result = ObjectCache.open().evict(maxSize);
+
+            AttributedStringBuilder builder = new AttributedStringBuilder();
+            builder.append("Cache cleaned: ", AttributedStyle.BOLD)
+                    .append(result.removed() + " files removed, " + ByteSize.format(result.freedBytes()) + " freed, ",
+                            AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN))
+                    .append(ByteSize.format(result.remainingBytes()) + " in " + Storage.getCacheDirectory(),
+                            AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN));
+            System.out.println(builder.toAnsi(terminal));
+        } catch (IOException e) {
+            log.error("Error cleaning cache", e);
+            return 1;
+        }
+
+        return 0;
+    }
+}
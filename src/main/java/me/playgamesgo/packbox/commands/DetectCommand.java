@@ -2,6 +2,11 @@ package me.playgamesgo.packbox.commands;
 
 import lombok.extern.slf4j.Slf4j;
 import me.playgamesgo.packbox.utils.Manifest;
+import me.playgamesgo.packbox.utils.StateIndex;
+import me.playgamesgo.packbox.utils.detect.DetectPipeline;
+import me.playgamesgo.packbox.utils.detect.DetectionCache;
+import me.playgamesgo.packbox.utils.download.PartialDownload;
+import me.playgamesgo.packbox.utils.hash.FileHashes;
 import me.playgamesgo.packbox.utils.source.CurseForge;
 import me.playgamesgo.packbox.utils.source.Modrinth;
 import org.jetbrains.annotations.Nullable;
@@ -17,14 +22,19 @@ import org.jline.utils.AttributedStyle;
 import picocli.CommandLine;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 
 @Slf4j
 @CommandLine.Command(
@@ -37,6 +47,23 @@ public final class DetectCommand implements Callable<Integer> {
     @Nullable
     private String folders;
 
+    @CommandLine.Option(names = {"-b", "--batch-size"}, defaultValue = "100",
+            description = "Number of files resolved per API request (default: ${DEFAULT-VALUE})")
+    private int batchSize;
+
+    @CommandLine.Option(names = {"--refresh"},
+            description = "Ignore cached detection results and query the sources again")
+    private boolean refresh;
+
+    @CommandLine.Option(names = {"--full"},
+            description = "Hash and resolve every file and rebuild the manifest instead of only processing changed files")
+    private boolean full;
+
+    @CommandLine.Option(names = {"--hedge"}, paramLabel = "<ms>", defaultValue = "-1",
+            description = "Also query the fallback source when the primary has not answered within this many milliseconds, " +
+                    "0 queries both at once (default: only after a primary miss)")
+    private long hedge;
+
     private final List<Manifest.Mod> foundedMods = new ArrayList<>();
 
     @Override
@@ -115,6 +142,8 @@ public final class DetectCommand implements Callable<Integer> {
                 System.out.println(message.toAnsi(terminal));
             }
 
+            StateIndex index = StateIndex.load();
+            List<File> files = new ArrayList<>();
             for (String folder : selectedFolders) {
                 AttributedStringBuilder message = new AttributedStringBuilder()
                         .append("Processing folder: ", AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN))
@@ -131,62 +160,107 @@ public final class DetectCommand implements Callable<Integer> {
                     continue;
                 }
 
-                for (File file : dir.listFiles()) {
-                    if (file.isFile()) {
-                        AttributedStringBuilder fileMessage = new AttributedStringBuilder()
-                                .append("Checking file: ", AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW))
-                                .append(file.getName(), AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW));
-                        System.out.println(fileMessage.toAnsi(terminal));
-
-                        @Nullable Manifest.Mod mod = switch (manifest.getSource()) {
-                            case MODRINTH -> Modrinth.getMod(file);
-                            case CURSEFORGE -> CurseForge.getMod(file, Files.readString(curseForgeTokenFile));
-                            default -> throw new IllegalStateException("Unexpected value: " + manifest.getSource());
-                        };
-
-                        if (mod == null) {
-                            if (manifest.getFallbackSource().equals(Manifest.Source.NONE)) {
-                                AttributedStringBuilder notFoundMessage = new AttributedStringBuilder()
-                                        .append("File not found in primary source: ", AttributedStyle.BOLD.foreground(AttributedStyle.RED))
-                                        .append(file.getName(), AttributedStyle.DEFAULT.foreground(AttributedStyle.RED));
-                                System.out.println(notFoundMessage.toAnsi(terminal));
-                                continue;
-                            } else {
-                                AttributedStringBuilder fallbackMessage = new AttributedStringBuilder()
-                                        .append("File not found in primary source, checking fallback source: ", AttributedStyle.BOLD.foreground(AttributedStyle.YELLOW))
-                                        .append(manifest.getFallbackSource().name(), AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW));
-                                System.out.println(fallbackMessage.toAnsi(terminal));
-
-                                mod = switch (manifest.getFallbackSource()) {
-                                    case MODRINTH -> Modrinth.getMod(file);
-                                    case CURSEFORGE -> CurseForge.getMod(file, Files.readString(curseForgeTokenFile));
-                                    default -> throw new IllegalStateException("Unexpected value: " + manifest.getFallbackSource());
-                                };
-
-                                if (mod == null) {
-                                    AttributedStringBuilder notFoundFallbackMessage = new AttributedStringBuilder()
-                                            .append("File not found in fallback source: ", AttributedStyle.BOLD.foreground(AttributedStyle.RED))
-                                            .append(file.getName(), AttributedStyle.DEFAULT.foreground(AttributedStyle.RED));
-                                    System.out.println(notFoundFallbackMessage.toAnsi(terminal));
-                                    continue;
-                                }
-                            }
-                        }
-
-                        foundedMods.add(mod);
-                        AttributedStringBuilder modMessage = new AttributedStringBuilder()
-                                .append("Found files source: ", AttributedStyle.BOLD.foreground(AttributedStyle.GREEN))
-                                .append(mod.getPath(), AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN))
-                                .append(" (", AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN))
-                                .append(mod.getSource().name(), AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN))
-                                .append(")", AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN));
-                        System.out.println(modMessage.toAnsi(terminal));
-                    }
+                Arrays.stream(Optional.ofNullable(dir.listFiles()).orElse(new File[0]))
+                        .filter(file -> file.isFile() && !PartialDownload.isPartial(file.toPath()))
+                        .sorted()
+                        .forEach(files::add);
+            }
+
+            // Files whose manifest entry still matches the unchanged file on disk need no hashing or lookup
+            Map<String, Manifest.Mod> existing = new HashMap<>();
+            for (Manifest.Mod mod : manifest.getMods()) existing.put(mod.getPath(), mod);
+            Map<String, Manifest.Mod> current = new HashMap<>();
+            List<File> changedFiles = files;
+            if (!full) {
+                changedFiles = new ArrayList<>();
+                for (File file : files) {
+                    @Nullable Manifest.Mod mod = existing.get(file.getPath());
+                    if (mod != null && mod.getSha1() != null && mod.getSha1().equals(index.lookup(file.toPath()))) {
+                        current.put(mod.getPath(), mod);
+                    } else changedFiles.add(file);
+                }
+
+                AttributedStringBuilder unchangedMessage = new AttributedStringBuilder()
+                        .append("Unchanged files: ", AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW))
+                        .append(String.valueOf(current.size()), AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW));
+                System.out.println(unchangedMessage.toAnsi(terminal));
+            }
+
+            AttributedStringBuilder checkingMessage = new AttributedStringBuilder()
+                    .append("Checking files: ", AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW))
+                    .append(String.valueOf(changedFiles.size()), AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW));
+            System.out.println(checkingMessage.toAnsi(terminal));
+
+            DetectionCache detectionCache = DetectionCache.open();
+            DetectPipeline pipeline = new DetectPipeline(index, manifest.getSource(), manifest.getFallbackSource(),
+                    (source, batch) -> lookup(source, batch, curseForgeTokenFile), detectionCache, refresh, hedge, batchSize);
+            List<File> failedFiles = new ArrayList<>();
+            pipeline.run(changedFiles, result -> {
+                // Without an answer nothing is known about the file, so its previous entry stays as it is
+                if (result.failed()) {
+                    failedFiles.add(result.file());
+                    @Nullable Manifest.Mod previous = existing.get(result.file().getPath());
+                    if (previous != null) foundedMods.add(previous);
+                    AttributedStringBuilder failedMessage = new AttributedStringBuilder()
+                            .append(previous != null ? "Lookup failed, keeping previous entry: " : "Lookup failed: ",
+                                    AttributedStyle.BOLD.foreground(AttributedStyle.RED))
+                            .append(result.file().getName(), AttributedStyle.DEFAULT.foreground(AttributedStyle.RED));
+                    System.out.println(failedMessage.toAnsi(terminal));
+                    return;
+                }
+
+                @Nullable Manifest.Mod mod = result.mod();
+                if (mod == null) {
+                    AttributedStringBuilder notFoundMessage = new AttributedStringBuilder()
+                            .append(result.checkedFallback() ? "File not found in fallback source: " : "File not found in primary source: ",
+                                    AttributedStyle.BOLD.foreground(AttributedStyle.RED))
+                            .append(result.file().getName(), AttributedStyle.DEFAULT.foreground(AttributedStyle.RED));
+                    System.out.println(notFoundMessage.toAnsi(terminal));
+                    return;
                 }
 
+                foundedMods.add(mod);
+                AttributedStringBuilder modMessage = new AttributedStringBuilder()
+                        .append("Found files source: ", AttributedStyle.BOLD.foreground(AttributedStyle.GREEN))
+                        .append(mod.getPath(), AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN))
+                        .append(" (", AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN))
+                        .append(mod.getSource().name(), AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN))
+                        .append(")", AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN));
+                System.out.println(modMessage.toAnsi(terminal));
+            });
+
+            // Results arrive in completion order, keep the manifest in folder listing order for stable diffs
+            Map<String, Integer> order = new HashMap<>();
+            for (File file : files) order.put(file.getPath(), order.size());
+            foundedMods.sort(Comparator.comparing(mod -> order.getOrDefault(mod.getPath(), Integer.MAX_VALUE)));
+
+            if (full) {
                 manifest.getMods().clear();
                 manifest.getMods().addAll(foundedMods);
                 Files.writeString(manifestFile, Manifest.gson.toJson(manifest));
+            } else {
+                for (Manifest.Mod mod : foundedMods) current.put(mod.getPath(), mod);
+                List<Manifest.Mod> mods = patch(manifest.getMods(), current, order, selectedFolders, removed -> {
+                    AttributedStringBuilder removedMessage = new AttributedStringBuilder()
+                            .append("Removed from manifest: ", AttributedStyle.BOLD.foreground(AttributedStyle.YELLOW))
+                            .append(removed.getPath(), AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW));
+                    System.out.println(removedMessage.toAnsi(terminal));
+                });
+                if (!mods.equals(manifest.getMods())) {
+                    manifest.setMods(mods);
+                    Files.writeString(manifestFile, Manifest.gson.toJson(manifest));
+                }
+            }
+            index.save();
+            detectionCache.save();
+
+            if (!failedFiles.isEmpty()) {
+                AttributedStringBuilder failedMessage = new AttributedStringBuilder()
+                        .append(failedFiles.size() + " files could not be resolved, run ", AttributedStyle.BOLD.foreground(AttributedStyle.RED))
+                        .append("packbox detect", AttributedStyle.DEFAULT.foreground(AttributedStyle.RED))
+                        .append(" again to retry them", AttributedStyle.BOLD.foreground(AttributedStyle.RED));
+                System.out.println(failedMessage.toAnsi(terminal));
+                return 1;
             }
         } catch (Exception e) {
             log.error("Error initializing terminal", e);
@@ -194,4 +268,51 @@ public final class DetectCommand implements Callable<Integer> {
 
         return 0;
     }
+
+    // Entries outside the detected folders stay where they are, removed entries are handed to the callback
+    static List<Manifest.Mod> patch(List<Manifest.Mod> mods, Map<String, Manifest.Mod> current, Map<String, Integer> order,
+                                    List<String> selectedFolders, Consumer<Manifest.Mod> removed) {
+        Map<String, Manifest.Mod> remaining = new HashMap<>(current);
+        List<Manifest.Mod> patched = new ArrayList<>();
+        for (Manifest.Mod mod : mods) {
+            @Nullable String folder = new File(mod.getPath()).getParent();
+            if (!order.containsKey(mod.getPath()) && !selectedFolders.contains(folder)) {
+                patched.add(mod);
+                continue;
+            }
+
+            @Nullable Manifest.Mod updated = remaining.remove(mod.getPath());
+            if (updated != null) {
+                patched.add(updated);
+                continue;
+            }
+
+            removed.accept(mod);
+        }
+
+        // New files go in front of the first entry that comes after them in the folder listing
+        List<Manifest.Mod> added = new ArrayList<>(remaining.values());
+        added.sort(Comparator.comparing(mod -> order.getOrDefault(mod.getPath(), Integer.MAX_VALUE)));
+        for (Manifest.Mod mod : added) {
+            int position = order.get(mod.getPath());
+            int at = patched.size();
+            for (int i = 0; i < patched.size(); i++) {
+                @Nullable Integer other = order.get(patched.get(i).getPath());
+                if (other != null && other > position) {
+                    at = i;
+                    break;
+                }
+            }
+            patched.add(at, mod);
+        }
+        return patched;
+    }
+
+    private Map<File, Manifest.Mod> lookup(Manifest.Source source, Map<File, FileHashes> files, Path curseForgeTokenFile) throws IOException {
+        return switch (source) {
+            case MODRINTH -> Modrinth.getMods(files);
+            case CURSEFORGE -> CurseForge.getMods(files, Files.readString(curseForgeTokenFile));
+            default -> throw new IllegalStateException("Unexpected value: " + source);
+        };
+    }
 }
@@ -0,0 +1,42 @@
+package me.playgamesgo.packbox.commands;
+
+import me.playgamesgo.packbox.utils.ByteSize;
+import me.playgamesgo.packbox.utils.StateIndex;
+import me.playgamesgo.packbox.utils.download.Installer;
+import me.playgamesgo.packbox.utils.download.ObjectCache;
+import me.playgamesgo.packbox.utils.http.BandwidthLimiter;
+import org.jetbrains.annotations.Nullable;
+import org.jline.terminal.Terminal;
+import picocli.CommandLine;
+
+import java.io.IOException;
+
+// Options of every command that downloads the manifest, mixed into install, sync and fetch
+public final class DownloadOptions {
+    @CommandLine.Option(names = {"-j", "--jobs"}, defaultValue = "8",
+            description = "Maximum number of concurrent downloads (default: ${DEFAULT-VALUE})")
+    private int jobs;
+
+    @CommandLine.Option(names = {"--no-cache"}, description = "Do not use the shared download cache")
+    private boolean noCache;
+
+    @CommandLine.Option(names = {"--cache-size"}, defaultValue = ObjectCache.DEFAULT_MAX_SIZE, converter = ByteSize.Converter.class,
+            description = "Maximum size of the shared download cache (default: ${DEFAULT-VALUE})")
+    private long cacheSize;
+
+    @CommandLine.Option(names = {"--max-rate"}, paramLabel = "<size>", converter = ByteSize.Converter.class,
+            description = "Maximum total download rate per second across all downloads, e.g. 20M (default: unlimited)")
+    private long maxRate;
+
+    public @Nullable ObjectCache openCache() {
+        return noCache ? null : ObjectCache.open();
+    }
+
+    public Installer installer(Terminal terminal, StateIndex index, @Nullable ObjectCache cache) {
+        return new Installer(terminal, index, cache, jobs, maxRate > 0 ? new BandwidthLimiter(maxRate) : null);
+    }
+
+    public void evict(@Nullable ObjectCache cache) throws IOException {
+        if (cache != null) cache.evict(cacheSize);
+    }
+}
@@ -0,0 +1,112 @@
+package me.playgamesgo.packbox.commands;
+
+import lombok.extern.slf4j.Slf4j;
+import me.playgamesgo.packbox.utils.Manifest;
+import me.playgamesgo.packbox.utils.StateIndex;
+import me.playgamesgo.packbox.utils.download.ObjectCache;
+import me.playgamesgo.packbox.utils.generation.Generations;
+import org.jetbrains.annotations.Nullable;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.TerminalBuilder;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+@Slf4j
+@CommandLine.Command(
+        name = "fetch",
+        description = "Download and verify the manifest into a staged generation without touching the instance"
+)
+public final class FetchCommand implements Callable<Integer> {
+    @CommandLine.Mixin
+    private DownloadOptions download;
+
+    @Override
+    public Integer call() {
+        try (Terminal terminal = TerminalBuilder.builder().build()) {
+            Path manifestFile = Paths.get("manifest.packbox.json");
+            if (!Files.exists(manifestFile)) {
+                AttributedStringBuilder builder = new AttributedStringBuilder();
+                builder.append("Manifest file not found, please run ", AttributedStyle.BOLD.foreground(AttributedStyle.RED))
+                        .append("packbox init", AttributedStyle.DEFAULT.foreground(AttributedStyle.RED))
+                        .append(" first.", AttributedStyle.DEFAULT.foreground(AttributedStyle.RED));
+                System.out.println(builder.toAnsi(terminal));
+                return 1;
+            }
+            Manifest manifest = Manifest.gson.fromJson(new String(Files.readAllBytes(manifestFile)), Manifest.class);
+
+            Generations generations = Generations.open();
+            String id = generations.beginFetch();
+            Path directory = generations.directory(id);
+
+            AttributedStringBuilder builder = new AttributedStringBuilder();
+            builder.append("Fetching into generation ", AttributedStyle.BOLD.foreground(AttributedStyle.GREEN))
+                    .append(id, AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN));
+            System.out.println(builder.toAnsi(terminal));
+
+            StateIndex index = StateIndex.load();
+            Set<Path> targets = new HashSet<>();
+            for (Manifest.Mod mod : manifest.getMods()) targets.add(directory.resolve(mod.getPath()));
+            generations.retain(id, targets, index);
+
+            List<Manifest.Mod> staged = new ArrayList<>();
+            for (Manifest.Mod mod : manifest.getMods()) {
+                Path target = directory.resolve(mod.getPath());
+                staged.add(new Manifest.Mod(target.toString(), mod.getUrl(), mod.getSource(), mod.getSha1()));
+
+                // Files that are already live and unchanged are reused instead of downloaded again
+                Path live = Paths.get(mod.getPath());
+                if (!Files.exists(target) && Files.exists(live) && mod.getSha1().equalsIgnoreCase(index.hash(live))) {
+                    seed(live, target);
+                    index.recordVerified(target, mod.getSha1());
+                }
+            }
+
+            @Nullable ObjectCache cache = download.openCache();
+            int installed = download.installer(terminal, index, cache).install(staged);
+            index.save();
+            download.evict(cache);
+
+            if (installed < staged.size()) {
+                AttributedStringBuilder failed = new AttributedStringBuilder();
+                failed.append("Fetch incomplete: ", AttributedStyle.BOLD.foreground(AttributedStyle.RED))
+                        .append(installed + "/" + staged.size() + " files verified, run ", AttributedStyle.DEFAULT.foreground(AttributedStyle.RED))
+                        .append("packbox fetch", AttributedStyle.BOLD.foreground(AttributedStyle.RED))
+                        .append(" again to resume", AttributedStyle.DEFAULT.foreground(AttributedStyle.RED));
+                System.out.println(failed.toAnsi(terminal));
+                return 1;
+            }
+            generations.finishFetch(id, manifest.getMods().stream().map(Manifest.Mod::getPath).toList());
+
+            AttributedStringBuilder complete = new AttributedStringBuilder();
+            complete.append("Fetch complete: ", AttributedStyle.BOLD)
+                    .append(installed + " files staged in " + id + ", run ", AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN))
+                    .append("packbox activate", AttributedStyle.BOLD.foreground(AttributedStyle.GREEN))
+                    .append(" to switch to it", AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN));
+            System.out.println(complete.toAnsi(terminal));
+        } catch (Exception e) {
+            log.error("Error fetching modpack", e);
+            return 1;
+        }
+
+        return 0;
+    }
+
+    private static void seed(Path live, Path target) {
+        try {
+            ObjectCache.link(live, target);
+        } catch (IOException e) {
+            log.warn("Failed to reuse {}, it will be downloaded again", live, e);
+        }
+    }
+}
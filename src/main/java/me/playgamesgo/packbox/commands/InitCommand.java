@@ -59,6 +59,7 @@ public final class InitCommand implements Callable<Integer> {
 
     @Override
     public Integer call() {
+        prefetchVersions();
         try (Terminal terminal = TerminalBuilder.builder().build()) {
             ConsolePrompt prompt = new ConsolePrompt(terminal);
             List<AttributedString> warns = new ArrayList<>();
@@ -89,6 +90,15 @@ public final class InitCommand implements Callable<Integer> {
         return 0;
     }
 
+    // Version lists load in the background while the user answers the first prompts
+    private void prefetchVersions() {
+        if (minecraftVersion != null && loaderVersion != null) return;
+        if (loader == null || loader.equalsIgnoreCase("fabric")) FabricLoader.prefetch();
+        if (loader == null || loader.equalsIgnoreCase("forge")) ForgeLoader.prefetch();
+        if (loader == null || loader.equalsIgnoreCase("neoforge")) NeoForgeLoader.prefetch();
+        if (loader == null || loader.equalsIgnoreCase("quilt")) QuiltLoader.prefetch();
+    }
+
     private List<PromptableElementIF> promptData(Map<String, PromptResultItemIF> results) {
         if (results.get("packName") == null && packName == null) return List.of(
                 new InputValue("packName", "Enter modpack name:", null, Paths.get("").toAbsolutePath().getFileName().toString())
@@ -0,0 +1,164 @@
+package me.playgamesgo.packbox.commands;
+
+import lombok.extern.slf4j.Slf4j;
+import me.playgamesgo.packbox.utils.Manifest;
+import me.playgamesgo.packbox.utils.StateIndex;
+import me.playgamesgo.packbox.utils.download.ObjectCache;
+import me.playgamesgo.packbox.utils.git.ManifestHistory;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jetbrains.annotations.Nullable;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.TerminalBuilder;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+@Slf4j
+@CommandLine.Command(
+        name = "sync",
+        description = "Apply manifest changes committed since the last sync"
+)
+public final class SyncCommand implements Callable<Integer> {
+    @CommandLine.Option(names = {"--from"}, paramLabel = "<rev>",
+            description = "Revision to compare HEAD against instead of the last synced commit")
+    @Nullable
+    private String from;
+
+    @CommandLine.Mixin
+    private DownloadOptions download;
+
+    @Override
+    public Integer call() {
+        try (Terminal terminal = TerminalBuilder.builder().build()) {
+            Path manifestFile = Paths.get("manifest.packbox.json");
+            if (!Files.exists(manifestFile)) {
+                AttributedStringBuilder builder = new AttributedStringBuilder();
+                builder.append("Manifest file not found, please run ", AttributedStyle.BOLD.foreground(AttributedStyle.RED))
+                        .append("packbox init", AttributedStyle.DEFAULT.foreground(AttributedStyle.RED))
+                        .append(" first.", AttributedStyle.DEFAULT.foreground(AttributedStyle.RED));
+                System.out.println(builder.toAnsi(terminal));
+                return 1;
+            }
+
+            try (ManifestHistory history = ManifestHistory.open(manifestFile)) {
+                @Nullable ObjectId head = history.resolve("HEAD");
+                @Nullable Manifest target = head == null ? null : history.read(head);
+                if (target == null) {
+                    printError(terminal, "The manifest is not committed at HEAD");
+                    return 1;
+                }
+
+                @Nullable String base = from != null ? from : ManifestHistory.lastApplied();
+                @Nullable ObjectId baseCommit = base == null ? null : history.resolve(base);
+                if (base != null && baseCommit == null) {
+                    printError(terminal, "Unknown revision: " + base);
+                    return 1;
+                }
+                @Nullable Manifest previous = baseCommit == null ? null : history.read(baseCommit);
+
+                Map<String, Manifest.Mod> previousMods = new HashMap<>();
+                if (previous != null) previous.getMods().forEach(mod -> previousMods.put(mod.getPath(), mod));
+
+                Set<String> targetPaths = new HashSet<>();
+                List<Manifest.Mod> changed = new ArrayList<>();
+                List<Manifest.Mod> unchanged = new ArrayList<>();
+                for (Manifest.Mod mod : target.getMods()) {
+                    targetPaths.add(mod.getPath());
+                    @Nullable Manifest.Mod old = previousMods.get(mod.getPath());
+                    if (old == null || !mod.getSha1().equalsIgnoreCase(old.getSha1())) changed.add(mod);
+                    else unchanged.add(mod);
+                }
+                List<Manifest.Mod> removed = previousMods.values().stream()
+                        .filter(mod -> !targetPaths.contains(mod.getPath()))
+                        .toList();
+
+                AttributedStringBuilder summary = new AttributedStringBuilder();
+                if (baseCommit == null) {
+                    summary.append("No previous sync, installing ", AttributedStyle.BOLD.foreground(AttributedStyle.GREEN))
+                            .append(history.abbreviate(head), AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN));
+                } else {
+                    summary.append("Syncing ", AttributedStyle.BOLD.foreground(AttributedStyle.GREEN))
+                            .append(history.abbreviate(baseCommit) + ".." + history.abbreviate(head), AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN))
+                            .append(": " + changed.size() + " added or changed, " + removed.size() + " removed",
+                                    AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN));
+                }
+                System.out.println(summary.toAnsi(terminal));
+
+                StateIndex index = StateIndex.load();
+                boolean clean = true;
+                for (Manifest.Mod mod : removed) {
+                    clean &= delete(terminal, index, mod);
+                }
+
+                @Nullable ObjectCache cache = download.openCache();
+                int installed = download.installer(terminal, index, cache).install(changed, unchanged);
+                index.save();
+                download.evict(cache);
+
+                AttributedStringBuilder complete = new AttributedStringBuilder();
+                complete.append("Sync complete: ", AttributedStyle.BOLD)
+                        .append(installed + "/" + changed.size() + " mods installed, " + removed.size() + " removed",
+                                AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN));
+                System.out.println(complete.toAnsi(terminal));
+
+                // Only a fully applied revision becomes the new base, otherwise the next sync retries the same delta
+                if (installed < changed.size() || !clean) return 1;
+                ManifestHistory.markApplied(head);
+            }
+        } catch (Exception e) {
+            log.error("Error syncing modpack", e);
+            return 1;
+        }
+
+        return 0;
+    }
+
+    private boolean delete(Terminal terminal, StateIndex index, Manifest.Mod mod) {
+        Path file = Paths.get(mod.getPath());
+        if (!Files.exists(file)) {
+            index.remove(file);
+            return true;
+        }
+
+        // Files that were changed locally since they were installed are left alone
+        if (!mod.getSha1().equalsIgnoreCase(index.hash(file))) {
+            AttributedStringBuilder message = new AttributedStringBuilder()
+                    .append("Keeping locally modified file: ", AttributedStyle.BOLD.foreground(AttributedStyle.YELLOW))
+                    .append(mod.getPath(), AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW));
+            System.out.println(message.toAnsi(terminal));
+            return true;
+        }
+
+        try {
+            Files.delete(file);
+            index.remove(file);
+        } catch (IOException e) {
+            log.error("Failed to remove {}", file, e);
+            return false;
+        }
+
+        AttributedStringBuilder message = new AttributedStringBuilder()
+                .append("Removed: ", AttributedStyle.BOLD)
+                .append(mod.getPath(), AttributedStyle.DEFAULT.foreground(AttributedStyle.RED));
+        System.out.println(message.toAnsi(terminal));
+        return true;
+    }
+
+    private void printError(Terminal terminal, String message) {
+        AttributedStringBuilder builder = new AttributedStringBuilder()
+                .append(message, AttributedStyle.BOLD.foreground(AttributedStyle.RED));
+        System.out.println(builder.toAnsi(terminal));
+    }
+}
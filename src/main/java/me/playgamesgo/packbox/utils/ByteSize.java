@@ -0,0 +1,48 @@
+package me.playgamesgo.packbox.utils;
+
+import picocli.CommandLine;
+
+import java.util.Locale;
+
+public final class ByteSize {
+    public static long parse(String value) {
+        String size = value.trim().toUpperCase(Locale.ROOT);
+        if (size.endsWith("IB")) size = size.substring(0, size.length() - 2);
+        else if (size.endsWith("B")) size = size.substring(0, size.length() - 1);
+        if (size.isEmpty()) throw new IllegalArgumentException("Invalid size: " + value);
+
+        long multiplier = switch (size.charAt(size.length() - 1)) {
+            case 'K' -> 1L << 10;
+            case 'M' -> 1L << 20;
+            case 'G' -> 1L << 30;
+            case 'T' -> 1L << 40;
+            default -> 1;
+        };
+        if (multiplier != 1) size = size.substring(0, size.length() - 1);
+
+        try {
+            double amount = Double.parseDouble(size.trim());
+            if (amount < 0) throw new IllegalArgumentException("Invalid size: " + value);
+            return (long) (amount * multiplier);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size: " + value, e);
+        }
+    }
+
+    public static String format(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        int unit = (63 - Long.numberOfLeadingZeros(bytes)) / 10;
+        return String.format(Locale.ROOT, "%.1f %siB", (double) bytes / (1L << (unit * 10)), "KMGTPE".charAt(unit - 1));
+    }
+
+    public static final class Converter implements CommandLine.ITypeConverter<Long> {
+        @Override
+        public Long convert(String value) {
+            try {
+                return parse(value);
+            } catch (IllegalArgumentException e) {
+                throw new CommandLine.TypeConversionException(e.getMessage());
+            }
+        }
+    }
+}
@@ -96,7 +96,8 @@ public final class Manifest extends TypeAdapter<Manifest> {
                                 case "path" -> mod.setPath(in.nextString());
                                 case "url" -> mod.setUrl(in.nextString());
                                 case "source" -> mod.setSource(Source.valueOf(in.nextString().toUpperCase()));
-                                case "sha1" -> mod.setSha1(in.nextString());
+                                // Hashes are compared and used as cache keys in lowercase, whatever case the file was written in
+                                case "sha1" -> mod.setSha1(in.nextString().toLowerCase());
                                 default -> in.skipValue();
                             }
                         }
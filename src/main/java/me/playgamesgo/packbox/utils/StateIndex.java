@@ -0,0 +1,233 @@
+package me.playgamesgo.packbox.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import lombok.extern.slf4j.Slf4j;
+import me.playgamesgo.packbox.utils.hash.FileHasher;
+import me.playgamesgo.packbox.utils.hash.FileHashes;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+public final class StateIndex extends TypeAdapter<StateIndex> {
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(StateIndex.class, new StateIndex())
+            .create();
+    // Files modified this close to the moment they were indexed may change again within the same mtime tick
+    private static final long RACY_WINDOW = 2000;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile long saved;
+
+    public static StateIndex load() {
+        Path file = getIndexFile();
+        if (!Files.exists(file)) return new StateIndex();
+        try {
+            StateIndex index = gson.fromJson(Files.readString(file), StateIndex.class);
+            return index == null ? new StateIndex() : index;
+        } catch (Exception e) {
+            log.warn("Failed to read install state, rebuilding it: {}", e.getMessage());
+            return new StateIndex();
+        }
+    }
+
+    public void save() throws IOException {
+        saved = System.currentTimeMillis();
+        Storage.writeAtomically(getIndexFile(), gson.toJson(this));
+    }
+
+    public @Nullable String lookup(Path path) {
+        @Nullable Entry entry = lookupEntry(path);
+        return entry == null ? null : entry.sha1();
+    }
+
+    public @Nullable String hash(Path path) {
+        @Nullable String sha1 = lookup(path);
+        if (sha1 != null) return sha1;
+
+        try {
+            sha1 = FileHasher.sha1(path);
+        } catch (IOException e) {
+            log.error("Error creating SHA-1 hash for {}", path, e);
+            return null;
+        }
+        record(path, sha1);
+        return sha1;
+    }
+
+    public @Nullable FileHashes hashAll(Path path) {
+        @Nullable Entry entry = lookupEntry(path);
+        if (entry != null && entry.sha512() != null && entry.fingerprint() != null) {
+            return new FileHashes(entry.sha1(), entry.sha512(), entry.fingerprint());
+        }
+
+        FileHashes hashes;
+        try {
+            hashes = FileHasher.hash(path);
+        } catch (IOException e) {
+            log.error("Error hashing {}", path, e);
+            return null;
+        }
+        record(path, hashes);
+        return hashes;
+    }
+
+    public void record(Path path, String sha1) {
+        record(path, sha1, null, null, false);
+    }
+
+    public void record(Path path, FileHashes hashes) {
+        record(path, hashes.sha1(), hashes.sha512(), hashes.fingerprint(), false);
+    }
+
+    // For a file packbox wrote or linked itself from verified content, there is no write by someone else to race with
+    public void recordVerified(Path path, String sha1) {
+        record(path, sha1, null, null, true);
+    }
+
+    private void record(Path path, String sha1, @Nullable String sha512, @Nullable Long fingerprint, boolean verified) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long mtime = attributes.lastModifiedTime().toMillis();
+            long checked = verified ? Math.max(System.currentTimeMillis(), mtime + RACY_WINDOW) : System.currentTimeMillis();
+            entries.put(key(path), new Entry(attributes.size(), mtime, fileKey(attributes), sha1, sha512, fingerprint, checked));
+        } catch (NoSuchFileException e) {
+            remove(path);
+        } catch (IOException e) {
+            log.warn("Failed to stat {}", path, e);
+            remove(path);
+        }
+    }
+
+    private @Nullable Entry lookupEntry(Path path) {
+        @Nullable Entry entry = entries.get(key(path));
+        if (entry == null) return null;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attributes.size() != entry.size()
+                    || attributes.lastModifiedTime().toMillis() != entry.mtime()
+                    || !Objects.equals(fileKey(attributes), entry.inode())
+                    // Like git, a file last modified well before the index was saved cannot have changed unseen
+                    || entry.mtime() + RACY_WINDOW > Math.max(entry.checked(), saved)) {
+                return null;
+            }
+            return entry;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void remove(Path path) {
+        entries.remove(key(path));
+    }
+
+    // Renaming a directory keeps size, mtime and inode of its files, so their entries stay valid under the new path
+    public void rename(Path from, Path to) {
+        String prefix = key(from) + "/";
+        String target = key(to) + "/";
+        for (String path : List.copyOf(entries.keySet())) {
+            if (!path.startsWith(prefix)) continue;
+            @Nullable Entry entry = entries.remove(path);
+            if (entry != null) entries.put(target + path.substring(prefix.length()), entry);
+        }
+    }
+
+    public void removeAll(Path directory) {
+        String prefix = key(directory) + "/";
+        entries.keySet().removeIf(path -> path.startsWith(prefix));
+    }
+
+    private static Path getIndexFile() {
+        return Storage.getLocalDirectory().resolve("state.json");
+    }
+
+    private static String key(Path path) {
+        return path.normalize().toString().replace(File.separatorChar, '/');
+    }
+
+    private static @Nullable String fileKey(BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        return fileKey == null ? null : fileKey.toString();
+    }
+
+    @Override
+    public void write(JsonWriter out, StateIndex value) throws IOException {
+        out.beginObject();
+        out.name("saved").value(value.saved);
+        out.name("files");
+        out.beginObject();
+        for (Map.Entry<String, Entry> entry : value.entries.entrySet()) {
+            out.name(entry.getKey());
+            out.beginObject();
+            out.name("size").value(entry.getValue().size());
+            out.name("mtime").value(entry.getValue().mtime());
+            if (entry.getValue().inode() != null) out.name("inode").value(entry.getValue().inode());
+            out.name("sha1").value(entry.getValue().sha1());
+            if (entry.getValue().sha512() != null) out.name("sha512").value(entry.getValue().sha512());
+            if (entry.getValue().fingerprint() != null) out.name("fingerprint").value(entry.getValue().fingerprint());
+            out.name("checked").value(entry.getValue().checked());
+            out.endObject();
+        }
+        out.endObject();
+        out.endObject();
+    }
+
+    @Override
+    public StateIndex read(JsonReader in) throws IOException {
+        StateIndex index = new StateIndex();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (name.equals("saved")) {
+                index.saved = in.nextLong();
+                continue;
+            }
+            if (!name.equals("files")) {
+                in.skipValue();
+                continue;
+            }
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String path = in.nextName();
+                long size = -1, mtime = -1, checked = 0;
+                String inode = null, sha1 = null, sha512 = null;
+                Long fingerprint = null;
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "size" -> size = in.nextLong();
+                        case "mtime" -> mtime = in.nextLong();
+                        case "inode" -> inode = in.nextString();
+                        case "sha1" -> sha1 = in.nextString();
+                        case "sha512" -> sha512 = in.nextString();
+                        case "fingerprint" -> fingerprint = in.nextLong();
+                        case "checked" -> checked = in.nextLong();
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+                if (sha1 != null) index.entries.put(path, new Entry(size, mtime, inode, sha1, sha512, fingerprint, checked));
+            }
+            in.endObject();
+        }
+        in.endObject();
+        return index;
+    }
+
+    private record Entry(long size, long mtime, @Nullable String inode, String sha1,
+                         @Nullable String sha512, @Nullable Long fingerprint, long checked) {}
+}
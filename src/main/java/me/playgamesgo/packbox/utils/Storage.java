@@ -0,0 +1,56 @@
+package me.playgamesgo.packbox.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+public final class Storage {
+    public static Path getLocalDirectory() {
+        return Paths.get(".packbox");
+    }
+
+    public static Path getCacheDirectory() {
+        String override = System.getenv("PACKBOX_CACHE_DIR");
+        if (override != null && !override.isBlank()) return Paths.get(override);
+
+        String os = System.getProperty("os.name", "").toLowerCase();
+        String home = System.getProperty("user.home");
+        if (os.contains("win")) {
+            String localAppData = System.getenv("LOCALAPPDATA");
+            return Paths.get(localAppData != null ? localAppData : home, "packbox", "cache");
+        }
+        if (os.contains("mac")) return Paths.get(home, "Library", "Caches", "packbox");
+
+        String xdgCache = System.getenv("XDG_CACHE_HOME");
+        if (xdgCache != null && !xdgCache.isBlank()) return Paths.get(xdgCache, "packbox");
+        return Paths.get(home, ".cache", "packbox");
+    }
+
+    // The content goes to a uniquely named temp file that is renamed over the target, so a crash never leaves half a
+    // file and two processes saving the same file at once cannot write into each other's temp file
+    public static void writeAtomically(Path file, Content content) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                content.write(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public static void writeAtomically(Path file, String content) throws IOException {
+        writeAtomically(file, out -> out.write(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public interface Content {
+        void write(OutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,221 @@
+package me.playgamesgo.packbox.utils.detect;
+
+import lombok.extern.slf4j.Slf4j;
+import me.playgamesgo.packbox.utils.Manifest;
+import me.playgamesgo.packbox.utils.StateIndex;
+import me.playgamesgo.packbox.utils.hash.FileHashes;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+@Slf4j
+public final class DetectPipeline {
+    private static final int MAX_IN_FLIGHT = 4;
+    private static final long LINGER_MILLIS = 50;
+    private static final Hashed END = new Hashed(null, null);
+    private static final Result END_RESULT = new Result(null, null, null, false, false);
+
+    private final StateIndex index;
+    private final Manifest.Source primary;
+    private final Manifest.Source fallback;
+    private final Resolver resolver;
+    private final DetectionCache cache;
+    private final boolean refresh;
+    private final long hedgeMillis;
+    private final int batchSize;
+    private final int hashThreads;
+
+    public DetectPipeline(StateIndex index, Manifest.Source primary, Manifest.Source fallback, Resolver resolver,
+                          DetectionCache cache, boolean refresh, long hedgeMillis, int batchSize) {
+        this.index = index;
+        this.primary = primary;
+        this.fallback = fallback;
+        this.resolver = resolver;
+        this.cache = cache;
+        this.refresh = refresh;
+        this.hedgeMillis = hedgeMillis;
+        this.batchSize = Math.max(1, batchSize);
+        this.hashThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    public void run(List<File> files, Consumer<Result> writer) throws InterruptedException {
+        ConcurrentLinkedQueue<File> input = new ConcurrentLinkedQueue<>(files);
+        BlockingQueue<Hashed> hashed = new ArrayBlockingQueue<>(batchSize * 2);
+        BlockingQueue<Result> results = new ArrayBlockingQueue<>(batchSize * 2);
+
+        try (ExecutorService hashers = Executors.newFixedThreadPool(hashThreads);
+             ExecutorService lookups = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < hashThreads; i++) {
+                hashers.submit(() -> {
+                    try {
+                        @Nullable File file;
+                        while ((file = input.poll()) != null) {
+                            @Nullable FileHashes hashes = index.hashAll(file.toPath());
+                            if (hashes == null) results.put(new Result(file, null, null, false, true));
+                            else hashed.put(new Hashed(file, hashes));
+                        }
+                    } finally {
+                        hashed.put(END);
+                    }
+                    return null;
+                });
+            }
+
+            lookups.submit(() -> {
+                try {
+                    dispatch(hashed, results, lookups);
+                } finally {
+                    results.put(END_RESULT);
+                }
+                return null;
+            });
+
+            Result result;
+            while ((result = results.take()) != END_RESULT) {
+                writer.accept(result);
+            }
+        }
+    }
+
+    private void dispatch(BlockingQueue<Hashed> hashed, BlockingQueue<Result> results, ExecutorService lookups) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        List<Hashed> batch = new ArrayList<>();
+        int finishedHashers = 0;
+
+        while (finishedHashers < hashThreads) {
+            // Wait briefly for a batch to fill up, but never hold back files once hashing is idle
+            @Nullable Hashed item = batch.isEmpty() ? hashed.take() : hashed.poll(LINGER_MILLIS, TimeUnit.MILLISECONDS);
+            if (item == null) {
+                submit(batch, results, lookups, inFlight);
+            } else if (item == END) {
+                finishedHashers++;
+            } else {
+                batch.add(item);
+                if (batch.size() >= batchSize) submit(batch, results, lookups, inFlight);
+            }
+        }
+        submit(batch, results, lookups, inFlight);
+        inFlight.acquire(MAX_IN_FLIGHT);
+    }
+
+    private void submit(List<Hashed> batch, BlockingQueue<Result> results, ExecutorService lookups, Semaphore inFlight) throws InterruptedException {
+        if (batch.isEmpty()) return;
+
+        Map<File, FileHashes> files = new LinkedHashMap<>();
+        for (Hashed item : batch) files.put(item.file(), item.hashes());
+        batch.clear();
+
+        inFlight.acquire();
+        lookups.submit(() -> {
+            try {
+                for (Result result : resolve(files, lookups)) results.put(result);
+            } finally {
+                inFlight.release();
+            }
+            return null;
+        });
+    }
+
+    private List<Result> resolve(Map<File, FileHashes> files, ExecutorService lookups) throws InterruptedException {
+        boolean hasFallback = !fallback.equals(Manifest.Source.NONE);
+        @Nullable CompletableFuture<Lookup> hedged = null;
+        Lookup primaryLookup;
+        if (hasFallback && hedgeMillis >= 0) {
+            // Start the fallback for the whole batch if the primary is slow to answer, its results only fill primary misses
+            CompletableFuture<Lookup> pending = CompletableFuture.supplyAsync(() -> lookup(primary, files), lookups);
+            try {
+                primaryLookup = pending.get(hedgeMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                hedged = CompletableFuture.supplyAsync(() -> lookup(fallback, files), lookups);
+                primaryLookup = pending.join();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        } else {
+            primaryLookup = lookup(primary, files);
+        }
+        Map<File, Manifest.Mod> mods = new HashMap<>(primaryLookup.mods());
+        Set<File> failed = new HashSet<>(primaryLookup.failed());
+
+        Map<File, FileHashes> missing = new LinkedHashMap<>(files);
+        missing.keySet().removeAll(mods.keySet());
+
+        boolean checkFallback = !missing.isEmpty() && hasFallback;
+        if (checkFallback) {
+            Lookup fallbackLookup = hedged != null ? hedged.join() : lookup(fallback, missing);
+            for (File file : missing.keySet()) {
+                @Nullable Manifest.Mod mod = fallbackLookup.mods().get(file);
+                if (mod != null) {
+                    mods.put(file, mod);
+                    failed.remove(file);
+                } else if (fallbackLookup.failed().contains(file)) failed.add(file);
+            }
+        }
+
+        // A file is only reported as not found when every source that was asked answered, otherwise it is unresolved
+        List<Result> results = new ArrayList<>();
+        for (Map.Entry<File, FileHashes> file : files.entrySet()) {
+            results.add(new Result(file.getKey(), file.getValue(), mods.get(file.getKey()),
+                    checkFallback && missing.containsKey(file.getKey()), failed.contains(file.getKey())));
+        }
+        return results;
+    }
+
+    private Lookup lookup(Manifest.Source source, Map<File, FileHashes> files) {
+        Map<File, Manifest.Mod> mods = new HashMap<>();
+        Map<File, FileHashes> uncached = new LinkedHashMap<>();
+        for (Map.Entry<File, FileHashes> file : files.entrySet()) {
+            @Nullable DetectionCache.Entry cached = refresh ? null : cache.get(source, file.getValue());
+            if (cached == null) uncached.put(file.getKey(), file.getValue());
+            else if (cached.isFound()) {
+                mods.put(file.getKey(), new Manifest.Mod(file.getKey().getPath(), cached.url(), source, file.getValue().sha1()));
+            }
+        }
+        if (uncached.isEmpty()) return new Lookup(mods, Set.of());
+
+        Map<File, Manifest.Mod> resolved;
+        try {
+            resolved = resolver.resolve(source, uncached);
+        } catch (Exception e) {
+            // A failed request says nothing about the files, so it must not be cached or reported as a miss
+            log.error("Failed to look up {} files in {}", uncached.size(), source, e);
+            return new Lookup(mods, uncached.keySet());
+        }
+
+        for (Map.Entry<File, FileHashes> file : uncached.entrySet()) {
+            @Nullable Manifest.Mod mod = resolved.get(file.getKey());
+            cache.put(source, file.getValue(), mod == null ? null : mod.getUrl());
+            if (mod != null) mods.put(file.getKey(), mod);
+        }
+        return new Lookup(mods, Set.of());
+    }
+
+    public interface Resolver {
+        Map<File, Manifest.Mod> resolve(Manifest.Source source, Map<File, FileHashes> files) throws Exception;
+    }
+
+    private record Hashed(File file, FileHashes hashes) {}
+
+    private record Lookup(Map<File, Manifest.Mod> mods, Set<File> failed) {}
+
+    // Failed means the file could not be hashed or a source could not be asked, so whether it exists is unknown
+    public record Result(File file, @Nullable FileHashes hashes, @Nullable Manifest.Mod mod, boolean checkedFallback, boolean failed) {}
+}
@@ -0,0 +1,138 @@
+package me.playgamesgo.packbox.utils.detect;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.extern.slf4j.Slf4j;
+import me.playgamesgo.packbox.utils.Manifest;
+import me.playgamesgo.packbox.utils.Storage;
+import me.playgamesgo.packbox.utils.hash.FileHashes;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+public final class DetectionCache extends TypeAdapter<DetectionCache> {
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(DetectionCache.class, new DetectionCache(null))
+            .create();
+    private static final long FOUND_TTL = TimeUnit.DAYS.toMillis(30);
+    // Files that are not indexed yet may be uploaded later, so misses are rechecked much sooner
+    private static final long MISSING_TTL = TimeUnit.HOURS.toMillis(12);
+
+    private final @Nullable Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private DetectionCache(@Nullable Path file) {
+        this.file = file;
+    }
+
+    public static DetectionCache open() {
+        return open(Storage.getCacheDirectory().resolve("detect.json"));
+    }
+
+    public static DetectionCache open(Path file) {
+        DetectionCache cache = new DetectionCache(file);
+        if (!Files.exists(file)) return cache;
+        try {
+            @Nullable DetectionCache stored = gson.fromJson(Files.readString(file), DetectionCache.class);
+            if (stored != null) cache.entries.putAll(stored.entries);
+        } catch (Exception e) {
+            log.warn("Failed to read detection cache, starting empty: {}", e.getMessage());
+        }
+        return cache;
+    }
+
+    public void save() throws IOException {
+        if (file == null) return;
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+
+        Storage.writeAtomically(file, gson.toJson(this));
+    }
+
+    public @Nullable Entry get(Manifest.Source source, FileHashes hashes) {
+        @Nullable Entry entry = entries.get(key(source, hashes));
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) return null;
+        return entry;
+    }
+
+    public void put(Manifest.Source source, FileHashes hashes, @Nullable String url) {
+        entries.put(key(source, hashes), new Entry(url, System.currentTimeMillis()));
+    }
+
+    private static String key(Manifest.Source source, FileHashes hashes) {
+        // Each source is queried by the hash it indexes files with
+        String hash = source.equals(Manifest.Source.CURSEFORGE) ? Long.toString(hashes.fingerprint()) : hashes.sha1();
+        return source.name().toLowerCase() + ":" + hash;
+    }
+
+    @Override
+    public void write(JsonWriter out, DetectionCache value) throws IOException {
+        out.beginObject();
+        out.name("entries");
+        out.beginObject();
+        for (Map.Entry<String, Entry> entry : value.entries.entrySet()) {
+            out.name(entry.getKey());
+            out.beginObject();
+            if (entry.getValue().url() != null) out.name("url").value(entry.getValue().url());
+            out.name("resolved").value(entry.getValue().resolved());
+            out.endObject();
+        }
+        out.endObject();
+        out.endObject();
+    }
+
+    @Override
+    public DetectionCache read(JsonReader in) throws IOException {
+        DetectionCache cache = new DetectionCache(null);
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!in.nextName().equals("entries")) {
+                in.skipValue();
+                continue;
+            }
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String key = in.nextName();
+                String url = null;
+                long resolved = 0;
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "url" -> {
+                            if (in.peek() == JsonToken.NULL) in.nextNull();
+                            else url = in.nextString();
+                        }
+                        case "resolved" -> resolved = in.nextLong();
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+                cache.entries.put(key, new Entry(url, resolved));
+            }
+            in.endObject();
+        }
+        in.endObject();
+        return cache;
+    }
+
+    public record Entry(@Nullable String url, long resolved) {
+        public boolean isFound() {
+            return url != null;
+        }
+
+        private boolean isExpired(long now) {
+            return resolved + (isFound() ? FOUND_TTL : MISSING_TTL) < now;
+        }
+    }
+}
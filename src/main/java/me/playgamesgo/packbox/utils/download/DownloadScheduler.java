@@ -0,0 +1,98 @@
+package me.playgamesgo.packbox.utils.download;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+public final class DownloadScheduler implements AutoCloseable {
+    private static final Map<String, Integer> HOST_LIMITS = Map.of(
+            "cdn.modrinth.com", 8,
+            "edge.forgecdn.net", 6,
+            "mediafilez.forgecdn.net", 6
+    );
+    private static final int DEFAULT_HOST_LIMIT = 4;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+    private final Semaphore jobs;
+    private final int maxJobs;
+
+    public DownloadScheduler(int jobs) {
+        this.maxJobs = Math.max(1, jobs);
+        this.jobs = new Semaphore(maxJobs, true);
+    }
+
+    public CompletableFuture<Void> submit(String url, Task task) {
+        return CompletableFuture.runAsync(() -> {
+            Semaphore host = hostSemaphore(url);
+            try {
+                // Host slot first, so a task waiting on a busy CDN does not hold a global slot
+                host.acquire();
+                try {
+                    jobs.acquire();
+                    try {
+                        task.run();
+                    } finally {
+                        jobs.release();
+                    }
+                } finally {
+                    host.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    // Work that only touches the disk, like materializing a cached object, takes a job slot but no host slot
+    public <T> CompletableFuture<T> submitLocal(Callable<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                jobs.acquire();
+                try {
+                    return task.call();
+                } finally {
+                    jobs.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    // A malformed URL shares the default slots, the task itself then fails on it and reports just that entry
+    private Semaphore hostSemaphore(String url) {
+        @Nullable String host;
+        try {
+            host = URI.create(url).getHost();
+        } catch (IllegalArgumentException e) {
+            host = null;
+        }
+        if (host == null) host = "";
+        return hosts.computeIfAbsent(host.toLowerCase(), key ->
+                new Semaphore(Math.min(maxJobs, HOST_LIMITS.getOrDefault(key, DEFAULT_HOST_LIMIT)), true));
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    public interface Task {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,84 @@
+package me.playgamesgo.packbox.utils.download;
+
+import me.playgamesgo.packbox.utils.Manifest;
+import me.playgamesgo.packbox.utils.StateIndex;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+public final class InstallPlan {
+    public enum Action {
+        ADD, REPLACE, DELETE, KEEP
+    }
+
+    public record Step(Action action, String path, @Nullable Manifest.Mod mod) {}
+
+    private final List<Step> steps;
+
+    private InstallPlan(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    // Only folders the manifest has entries in are scanned for stale files, anything else on disk is left alone
+    public static InstallPlan create(List<Manifest.Mod> mods, StateIndex index, boolean prune) throws IOException {
+        List<Step> steps = new ArrayList<>();
+        Set<String> wanted = new HashSet<>();
+        Set<String> folders = new TreeSet<>();
+        for (Manifest.Mod mod : mods) {
+            Path file = Paths.get(mod.getPath());
+            wanted.add(key(file));
+            if (file.getParent() != null) folders.add(key(file.getParent()));
+            steps.add(new Step(plan(mod, file, index), mod.getPath(), mod));
+        }
+        if (!prune) return new InstallPlan(steps);
+
+        for (String folder : folders) {
+            Path directory = Paths.get(folder);
+            if (!Files.isDirectory(directory)) continue;
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(Files::isRegularFile)
+                        .filter(file -> !PartialDownload.isPartial(file) && !wanted.contains(key(file)))
+                        .sorted()
+                        .forEach(file -> steps.add(new Step(Action.DELETE, key(file), null)));
+            }
+        }
+        return new InstallPlan(steps);
+    }
+
+    private static Action plan(Manifest.Mod mod, Path file, StateIndex index) {
+        if (!Files.exists(file)) return Action.ADD;
+        // Size, mtime and inode usually settle it, files that changed since they were indexed are hashed again
+        @Nullable String sha1 = index.lookup(file);
+        if (sha1 == null) sha1 = index.hash(file);
+        return mod.getSha1().equalsIgnoreCase(sha1) ? Action.KEEP : Action.REPLACE;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    public List<Step> getSteps(Action action) {
+        return steps.stream().filter(step -> step.action() == action).toList();
+    }
+
+    public List<Manifest.Mod> getDownloads() {
+        return steps.stream()
+                .filter(step -> step.action() == Action.ADD || step.action() == Action.REPLACE)
+                .map(Step::mod)
+                .toList();
+    }
+
+    private static String key(Path path) {
+        return path.normalize().toString().replace(File.separatorChar, '/');
+    }
+}
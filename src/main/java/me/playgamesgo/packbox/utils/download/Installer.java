@@ -0,0 +1,415 @@
+package me.playgamesgo.packbox.utils.download;
+
+import lombok.extern.slf4j.Slf4j;
+import me.playgamesgo.packbox.utils.Manifest;
+import me.playgamesgo.packbox.utils.StateIndex;
+import me.playgamesgo.packbox.utils.http.BandwidthLimiter;
+import me.playgamesgo.packbox.utils.http.BodyStream;
+import me.playgamesgo.packbox.utils.http.Http;
+import me.playgamesgo.packbox.utils.http.RetryPolicy;
+import org.jetbrains.annotations.Nullable;
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+public final class Installer {
+    private final Terminal terminal;
+    private final StateIndex index;
+    private final @Nullable ObjectCache cache;
+    private final int jobs;
+    private final @Nullable BandwidthLimiter bandwidth;
+
+    public Installer(Terminal terminal, StateIndex index, @Nullable ObjectCache cache, int jobs, @Nullable BandwidthLimiter bandwidth) {
+        this.terminal = terminal;
+        this.index = index;
+        this.cache = cache;
+        this.jobs = jobs;
+        this.bandwidth = bandwidth;
+    }
+
+    public int install(List<Manifest.Mod> mods) {
+        return install(mods, List.of());
+    }
+
+    // Entries in existing are not installed, but those that are in place can be linked to duplicates instead of a download
+    public int install(List<Manifest.Mod> mods, List<Manifest.Mod> existing) {
+        int totalMods = mods.size();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger installed = new AtomicInteger();
+
+        // Entries with the same content are fetched once, the other paths get a link or copy of the first one
+        Map<String, Path> present = new HashMap<>();
+        Map<String, List<Manifest.Mod>> groups = new LinkedHashMap<>();
+        for (Manifest.Mod mod : mods) {
+            File modFile = new File(mod.getPath());
+            String sha1 = mod.getSha1();
+            // A file that cannot be read is simply downloaded again
+            if (modFile.exists() && sha1.equals(index.hash(modFile.toPath()))) {
+                present.putIfAbsent(sha1, modFile.toPath());
+                installed.incrementAndGet();
+                updateProgressLine(terminal, mod.getPath(), 100, completed.incrementAndGet(), totalMods, "SKIPPED");
+                continue;
+            }
+            groups.computeIfAbsent(sha1, key -> new ArrayList<>()).add(mod);
+        }
+        // Only content that is still needed is looked for among the existing files, the others are not even checked
+        for (Manifest.Mod mod : existing) {
+            String sha1 = mod.getSha1();
+            if (!groups.containsKey(sha1) || present.containsKey(sha1)) continue;
+            Path file = Paths.get(mod.getPath());
+            if (Files.exists(file) && sha1.equalsIgnoreCase(index.hash(file))) present.put(sha1, file);
+        }
+
+        List<CompletableFuture<Void>> downloads = new ArrayList<>();
+        try (DownloadScheduler scheduler = new DownloadScheduler(jobs)) {
+            for (Map.Entry<String, List<Manifest.Mod>> group : groups.entrySet()) {
+                @Nullable Path source = present.get(group.getKey());
+                if (source != null) {
+                    fanOut(source, group.getValue(), completed, installed, totalMods);
+                    continue;
+                }
+
+                Manifest.Mod mod = group.getValue().getFirst();
+                List<Manifest.Mod> copies = group.getValue().subList(1, group.getValue().size());
+                File modFile = new File(mod.getPath());
+                DownloadScheduler.Task download = () -> {
+                    try {
+                        download(terminal, mod, modFile, completed, totalMods);
+                        index.recordVerified(modFile.toPath(), mod.getSha1());
+                        if (cache != null) cache.store(mod.getSha1(), modFile.toPath());
+                        installed.incrementAndGet();
+                    } catch (Exception e) {
+                        updateProgressLine(terminal, mod.getPath(), 0, completed.incrementAndGet(), totalMods, "ERROR");
+                        for (Manifest.Mod copy : copies) {
+                            updateProgressLine(terminal, copy.getPath(), 0, completed.incrementAndGet(), totalMods, "ERROR");
+                        }
+                        log.error("Error downloading file: {}", mod.getUrl(), e);
+                        return;
+                    }
+                    fanOut(modFile.toPath(), copies, completed, installed, totalMods);
+                };
+                if (cache == null) {
+                    downloads.add(scheduler.submit(mod.getUrl(), download));
+                    continue;
+                }
+
+                // Cache hits are verified on the workers as well, so reading them does not hold up the downloads behind them
+                downloads.add(scheduler.submitLocal(() -> {
+                    if (!materialize(mod, modFile.toPath())) return false;
+                    installed.incrementAndGet();
+                    updateProgressLine(terminal, mod.getPath(), 100, completed.incrementAndGet(), totalMods, "CACHED");
+                    fanOut(modFile.toPath(), copies, completed, installed, totalMods);
+                    return true;
+                }).thenCompose(hit -> hit ? CompletableFuture.<Void>completedFuture(null) : scheduler.submit(mod.getUrl(), download)));
+            }
+
+            CompletableFuture.allOf(downloads.toArray(CompletableFuture[]::new)).join();
+        }
+
+        clearLine(terminal);
+        return installed.get();
+    }
+
+    // A cached object is checked before it is trusted, a damaged one is dropped and the file downloaded instead
+    private boolean materialize(Manifest.Mod mod, Path target) {
+        if (cache == null || !cache.materialize(mod.getSha1(), target)) return false;
+        if (mod.getSha1().equalsIgnoreCase(index.hash(target))) return true;
+
+        log.warn("Cached object for {} does not match {}, downloading it again", mod.getPath(), mod.getSha1());
+        cache.discard(mod.getSha1());
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            log.warn("Failed to remove {}", target, e);
+        }
+        index.remove(target);
+        return false;
+    }
+
+    private void fanOut(Path source, List<Manifest.Mod> targets, AtomicInteger completed, AtomicInteger installed, int totalMods) {
+        for (Manifest.Mod mod : targets) {
+            Path target = Paths.get(mod.getPath());
+            try {
+                ObjectCache.link(source, target);
+                index.recordVerified(target, mod.getSha1());
+                installed.incrementAndGet();
+                updateProgressLine(terminal, mod.getPath(), 100, completed.incrementAndGet(), totalMods, "LINKED");
+            } catch (IOException e) {
+                updateProgressLine(terminal, mod.getPath(), 0, completed.incrementAndGet(), totalMods, "ERROR");
+                log.error("Error copying {} to {}", source, target, e);
+            }
+        }
+    }
+
+    private void download(Terminal terminal, Manifest.Mod mod, File modFile, AtomicInteger completed, int totalMods) throws IOException {
+        synchronized (terminal) {
+            clearLine(terminal);
+            AttributedStringBuilder startBuilder = new AttributedStringBuilder();
+            startBuilder.append("Starting download: ", AttributedStyle.BOLD)
+                    .append(mod.getPath(), AttributedStyle.DEFAULT.foreground(AttributedStyle.CYAN));
+            System.out.println(startBuilder.toAnsi(terminal));
+        }
+
+        if (modFile.getParentFile() != null && !modFile.getParentFile().exists()) {
+            modFile.getParentFile().mkdirs();
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        Path target = modFile.toPath();
+        PartialDownload partial = PartialDownload.of(target);
+        // Each retry resumes from the .part file left by the previous attempt
+        RetryPolicy.DEFAULT.call(URI.create(mod.getUrl()), true, () -> {
+            transfer(terminal, mod, partial, digest, completed, totalMods);
+            return null;
+        });
+
+        String sha1 = HexFormat.of().formatHex(digest.digest());
+        if (!sha1.equalsIgnoreCase(mod.getSha1())) {
+            partial.discard();
+            throw new IOException("SHA-1 mismatch for " + mod.getPath() + ": expected " + mod.getSha1() + ", got " + sha1);
+        }
+        partial.complete(target);
+
+        int current = completed.incrementAndGet();
+        synchronized (terminal) {
+            updateProgressLine(terminal, mod.getPath(), 100, current, totalMods, "DONE");
+            clearLine(terminal);
+            AttributedStringBuilder successfulBuilder = new AttributedStringBuilder();
+            successfulBuilder.append("Successfully downloaded: ", AttributedStyle.BOLD)
+                    .append(mod.getPath(), AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN));
+            System.out.println(successfulBuilder.toAnsi(terminal));
+        }
+    }
+
+    private void transfer(Terminal terminal, Manifest.Mod mod, PartialDownload partial, MessageDigest digest,
+                          AtomicInteger completed, int totalMods) throws IOException {
+        digest.reset();
+        long offset;
+        try {
+            offset = partial.resume(digest);
+        } catch (IOException e) {
+            throw local(partial.getPart(), e);
+        }
+        // A .part that is already complete, left by a crash before the rename or a rename that failed, needs no request
+        if (offset > 0 && offset == partial.getLength()) {
+            if (mod.getSha1().equalsIgnoreCase(HexFormat.of().formatHex(copy(digest).digest()))) return;
+            partial.discard();
+            digest.reset();
+            offset = 0;
+        }
+
+        HttpRequest.Builder request = Http.request(mod.getUrl()).GET();
+        if (offset > 0) {
+            request.header("Range", "bytes=" + offset + "-");
+            if (partial.getEtag() != null) request.header("If-Range", partial.getEtag());
+        }
+        HttpResponse<BodyStream> response = Http.stream(request.build());
+
+        try (BodyStream body = response.body()) {
+            int status = response.statusCode();
+            long contentLength = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            long fileSize;
+            if (offset > 0 && status == 206) {
+                if (!isExpectedRange(response.headers().firstValue("Content-Range").orElse(null), offset, partial.getLength())) {
+                    partial.discard();
+                    throw new IOException("Server returned an unexpected range for " + mod.getUrl());
+                }
+                fileSize = partial.getLength() >= 0 ? partial.getLength() : offset + contentLength;
+            } else if (status == 200) {
+                // Fresh download, or the file changed on the server and If-Range sent it whole
+                if (offset > 0) {
+                    digest.reset();
+                    offset = 0;
+                }
+                fileSize = contentLength;
+                try {
+                    partial.begin(response.headers().firstValue("ETag").orElse(null), fileSize);
+                } catch (IOException e) {
+                    throw local(partial.getPart(), e);
+                }
+            } else {
+                if (status == 416) partial.discard();
+                throw new Http.StatusException(status, "Unexpected HTTP status " + status + " for " + mod.getUrl());
+            }
+            if (fileSize <= 0) fileSize = 1000000; // Default if size unknown
+
+            // The received buffers go straight to the channel in one gathering write, nothing is copied on the way
+            FileChannel out;
+            try {
+                out = FileChannel.open(partial.getPart(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        offset > 0 ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                throw local(partial.getPart(), e);
+            }
+            try (out) {
+                long received = offset;
+                long reported = offset;
+                ByteBuffer @Nullable [] buffers;
+                while ((buffers = body.next()) != null) {
+                    long length = 0;
+                    for (ByteBuffer buffer : buffers) {
+                        length += buffer.remaining();
+                        digest.update(buffer.duplicate());
+                    }
+                    // Holding back the next chunk slows the sender down through flow control
+                    if (bandwidth != null) {
+                        try {
+                            bandwidth.acquire(length);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Interrupted while downloading " + mod.getUrl());
+                        }
+                    }
+                    try {
+                        for (long written = 0; written < length; ) {
+                            written += out.write(buffers);
+                        }
+                    } catch (IOException e) {
+                        throw local(partial.getPart(), e);
+                    }
+
+                    received += length;
+                    if (received - reported > fileSize / 50) {
+                        reported = received;
+                        updateProgressLine(terminal, mod.getPath(), (int) Math.min(100, received * 100 / fileSize),
+                                completed.get() + 1, totalMods, null);
+                    }
+                }
+                try {
+                    out.force(true);
+                } catch (IOException e) {
+                    throw local(partial.getPart(), e);
+                }
+            }
+        }
+    }
+
+    // Failures on the local file are reported as such, so the retry policy does not hold them against the host
+    private static FileSystemException local(Path file, IOException e) {
+        if (e instanceof FileSystemException fileSystem) return fileSystem;
+        FileSystemException wrapped = new FileSystemException(file.toString(), null, e.getMessage());
+        wrapped.initCause(e);
+        return wrapped;
+    }
+
+    private static MessageDigest copy(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isExpectedRange(@Nullable String contentRange, long offset, long length) {
+        // Content-Range: bytes <start>-<end>/<total or *>
+        if (contentRange == null || !contentRange.startsWith("bytes ")) return false;
+        String[] range = contentRange.substring(6).split("[-/]");
+        if (range.length != 3) return false;
+        try {
+            if (Long.parseLong(range[0].trim()) != offset) return false;
+            return length < 0 || range[2].trim().equals("*") || Long.parseLong(range[2].trim()) == length;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void updateProgressLine(Terminal terminal, String modPath, int percent, int currentMod, int totalMods, @Nullable String status) {
+        synchronized (terminal) {
+            printProgressLine(terminal, modPath, percent, currentMod, totalMods, status);
+        }
+    }
+
+    private void printProgressLine(Terminal terminal, String modPath, int percent, int currentMod, int totalMods, @Nullable String status) {
+        terminal.writer().print("\r");
+
+        String modName = new File(modPath).getName();
+        if (modName.length() > 30) {
+            modName = modName.substring(0, 27) + "...";
+        }
+
+        int overallPercent = (int) ((currentMod - 1) * 100.0 / totalMods + (double) percent / totalMods);
+
+        AttributedStringBuilder builder = new AttributedStringBuilder();
+        builder.append(String.format("%-30s ", modName), AttributedStyle.BOLD);
+
+
+        builder.append("[");
+        int progressChars = Math.min(50, percent / 2);
+        for (int i = 0; i < 50; i++) {
+            if (i < progressChars) {
+                builder.append("=", AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN));
+            } else if (i == progressChars && percent < 100) {
+                builder.append(">", AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN));
+            } else {
+                builder.append(" ");
+            }
+        }
+        builder.append("] ");
+
+        if (status != null) {
+            AttributedStyle style = status.equals("DONE") ?
+                    AttributedStyle.BOLD.foreground(AttributedStyle.GREEN) :
+                    status.equals("ERROR") ?
+                            AttributedStyle.BOLD.foreground(AttributedStyle.RED) :
+                            AttributedStyle.BOLD.foreground(AttributedStyle.YELLOW);
+            builder.append(status, style);
+        } else {
+            builder.append(String.format("%3d%%", percent), AttributedStyle.DEFAULT.foreground(AttributedStyle.CYAN));
+        }
+
+
+        builder.append(" | Total: ");
+        builder.append(String.format("%3d%%", overallPercent),
+                AttributedStyle.BOLD.foreground(AttributedStyle.YELLOW));
+        builder.append(String.format(" [%d/%d]", currentMod, totalMods));
+
+        String output = builder.toAnsi(terminal);
+        terminal.writer().print(output);
+
+        int padding = terminal.getWidth() - output.length();
+        if (padding > 0) {
+            terminal.writer().print(" ".repeat(padding));
+            terminal.writer().print("\r" + output);
+        }
+
+        terminal.writer().flush();
+    }
+
+    private void clearLine(Terminal terminal) {
+        terminal.writer().print("\r");
+        for (int i = 0; i < terminal.getWidth(); i++) {
+            terminal.writer().print(" ");
+        }
+        terminal.writer().print("\r");
+        terminal.writer().flush();
+    }
+}
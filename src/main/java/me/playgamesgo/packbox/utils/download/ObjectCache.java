@@ -0,0 +1,175 @@
+package me.playgamesgo.packbox.utils.download;
+
+import lombok.extern.slf4j.Slf4j;
+import me.playgamesgo.packbox.utils.Storage;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+@Slf4j
+public final class ObjectCache {
+    public static final String DEFAULT_MAX_SIZE = "10G";
+    private static final String USED_SUFFIX = ".used";
+
+    private final Path objects;
+
+    public ObjectCache(Path root) {
+        this.objects = root.resolve("objects");
+    }
+
+    public static ObjectCache open() {
+        return new ObjectCache(Storage.getCacheDirectory());
+    }
+
+    public @Nullable Path get(String sha1) {
+        Path object = objectPath(sha1);
+        return object != null && Files.isRegularFile(object) ? object : null;
+    }
+
+    public boolean materialize(String sha1, Path target) {
+        @Nullable Path object = get(sha1);
+        if (object == null) return false;
+
+        try {
+            link(object, target);
+            touch(object);
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to materialize cached object {} into {}", sha1, target, e);
+            return false;
+        }
+    }
+
+    public void discard(String sha1) {
+        Path object = objectPath(sha1);
+        if (object == null) return;
+        try {
+            Files.deleteIfExists(object);
+            Files.deleteIfExists(usedMarker(object));
+        } catch (IOException e) {
+            log.warn("Failed to remove cached object {}", sha1, e);
+        }
+    }
+
+    // Objects are hardlinked into instances, so their own mtime must stay untouched, last use is kept on a separate file
+    private static void touch(Path object) {
+        Path marker = usedMarker(object);
+        try {
+            if (!Files.exists(marker)) Files.createFile(marker);
+            Files.setLastModifiedTime(marker, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (FileAlreadyExistsException ignored) {
+            // Another install created it concurrently
+        } catch (IOException e) {
+            log.warn("Failed to record use of {}", object, e);
+        }
+    }
+
+    private static Path usedMarker(Path object) {
+        return object.resolveSibling(object.getFileName() + USED_SUFFIX);
+    }
+
+    public static void link(Path source, Path target) throws IOException {
+        if (target.getParent() != null) Files.createDirectories(target.getParent());
+        Path temp = PartialDownload.linkStaging(target);
+        Files.deleteIfExists(temp);
+        try {
+            try {
+                Files.createLink(temp, source);
+            } catch (IOException | UnsupportedOperationException e) {
+                // Different filesystem or no hardlink support, fall back to a plain copy
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public void store(String sha1, Path source) {
+        Path object = objectPath(sha1);
+        if (object == null || Files.exists(object)) return;
+
+        try {
+            Files.createDirectories(object.getParent());
+            Path temp = Files.createTempFile(object.getParent(), sha1, ".tmp");
+            try {
+                Files.delete(temp);
+                try {
+                    Files.createLink(temp, source);
+                } catch (IOException | UnsupportedOperationException e) {
+                    Files.copy(source, temp);
+                }
+                Files.move(temp, object, StandardCopyOption.ATOMIC_MOVE);
+                touch(object);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (FileAlreadyExistsException ignored) {
+            // Another install stored the same object concurrently
+        } catch (IOException e) {
+            log.warn("Failed to store {} in cache", source, e);
+        }
+    }
+
+    public GcResult evict(long maxSize) throws IOException {
+        if (!Files.isDirectory(objects)) return new GcResult(0, 0, 0);
+
+        List<Path> objectFiles = new ArrayList<>();
+        Map<Path, Long> used = new HashMap<>();
+        try (Stream<Path> files = Files.walk(objects)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file)) continue;
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // Leftover from an interrupted store
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(USED_SUFFIX)) {
+                    used.put(file, Files.getLastModifiedTime(file).toMillis());
+                } else objectFiles.add(file);
+            }
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : objectFiles) {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            @Nullable Long lastUsed = used.remove(usedMarker(file));
+            entries.add(new Entry(file, attributes.size(), lastUsed != null ? lastUsed : attributes.lastModifiedTime().toMillis()));
+        }
+        // Markers whose object is gone
+        for (Path marker : used.keySet()) Files.deleteIfExists(marker);
+
+        long total = entries.stream().mapToLong(Entry::size).sum();
+        entries.sort(Comparator.comparingLong(Entry::lastUsed));
+
+        int removed = 0;
+        long freed = 0;
+        for (Entry entry : entries) {
+            if (total <= maxSize) break;
+            Files.deleteIfExists(entry.path());
+            Files.deleteIfExists(usedMarker(entry.path()));
+            total -= entry.size();
+            freed += entry.size();
+            removed++;
+        }
+
+        return new GcResult(removed, freed, total);
+    }
+
+    private @Nullable Path objectPath(@Nullable String sha1) {
+        if (sha1 == null || !sha1.matches("[0-9a-f]{40}")) return null;
+        return objects.resolve(sha1.substring(0, 2)).resolve(sha1);
+    }
+
+    private record Entry(Path path, long size, long lastUsed) {}
+
+    public record GcResult(int removed, long freedBytes, long remainingBytes) {}
+}
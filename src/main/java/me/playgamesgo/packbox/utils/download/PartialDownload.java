@@ -0,0 +1,103 @@
+package me.playgamesgo.packbox.utils.download;
+
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Properties;
+
+public final class PartialDownload {
+    public static final String PART_SUFFIX = ".part";
+    private static final String META_SUFFIX = ".part.meta";
+    private static final String LINK_SUFFIX = ".link.tmp";
+
+    @Getter private final Path part;
+    private final Path meta;
+    @Getter @Nullable private String etag;
+    @Getter private long length = -1;
+
+    private PartialDownload(Path target) {
+        this.part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        this.meta = target.resolveSibling(target.getFileName() + META_SUFFIX);
+    }
+
+    public static PartialDownload of(Path target) {
+        return new PartialDownload(target);
+    }
+
+    // Where a link or copy is staged before it is renamed over the target, so a crash leaves a file detect and install skip
+    public static Path linkStaging(Path target) {
+        return target.resolveSibling(target.getFileName() + LINK_SUFFIX);
+    }
+
+    public static boolean isPartial(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(PART_SUFFIX) || name.endsWith(META_SUFFIX) || name.endsWith(LINK_SUFFIX);
+    }
+
+    public static Path targetOf(Path partial) {
+        String name = partial.getFileName().toString();
+        String suffix = name.endsWith(META_SUFFIX) ? META_SUFFIX : name.endsWith(LINK_SUFFIX) ? LINK_SUFFIX : PART_SUFFIX;
+        return partial.resolveSibling(name.substring(0, name.length() - suffix.length()));
+    }
+
+    public long resume(MessageDigest digest) throws IOException {
+        if (!Files.isRegularFile(part) || !Files.isRegularFile(meta)) {
+            discard();
+            return 0;
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(meta)) {
+            properties.load(reader);
+        }
+        etag = properties.getProperty("etag");
+        length = Long.parseLong(properties.getProperty("length", "-1"));
+
+        long offset = Files.size(part);
+        if (length >= 0 && offset > length) {
+            discard();
+            return 0;
+        }
+
+        try (InputStream in = Files.newInputStream(part)) {
+            byte[] buffer = new byte[65536];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return offset;
+    }
+
+    public void begin(@Nullable String etag, long length) throws IOException {
+        this.etag = etag;
+        this.length = length;
+
+        Properties properties = new Properties();
+        if (etag != null) properties.setProperty("etag", etag);
+        properties.setProperty("length", Long.toString(length));
+        try (Writer writer = Files.newBufferedWriter(meta)) {
+            properties.store(writer, null);
+        }
+    }
+
+    public void complete(Path target) throws IOException {
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(meta);
+    }
+
+    public void discard() throws IOException {
+        Files.deleteIfExists(part);
+        Files.deleteIfExists(meta);
+        etag = null;
+        length = -1;
+    }
+}
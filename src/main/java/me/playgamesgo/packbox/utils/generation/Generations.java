@@ -0,0 +1,242 @@
+package me.playgamesgo.packbox.utils.generation;
+
+import lombok.extern.slf4j.Slf4j;
+import me.playgamesgo.packbox.utils.StateIndex;
+import me.playgamesgo.packbox.utils.Storage;
+import me.playgamesgo.packbox.utils.download.ObjectCache;
+import me.playgamesgo.packbox.utils.download.PartialDownload;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Stream;
+
+@Slf4j
+public final class Generations {
+    public static final List<String> FOLDERS = List.of("mods", "resourcepacks", "shaderpacks");
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String MANAGED_FILE = "managed.list";
+
+    private final Path root;
+    private final Properties state = new Properties();
+
+    private Generations(Path root) {
+        this.root = root;
+    }
+
+    public static Generations open() throws IOException {
+        Generations generations = new Generations(Storage.getLocalDirectory().resolve("generations"));
+        Path file = generations.getStateFile();
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                generations.state.load(in);
+            }
+        }
+        return generations;
+    }
+
+    public Path directory(String id) {
+        return root.resolve(id);
+    }
+
+    public @Nullable String getCurrent() {
+        return state.getProperty("current");
+    }
+
+    public @Nullable String getPrevious() {
+        return state.getProperty("previous");
+    }
+
+    public @Nullable String getStaged() {
+        return state.getProperty("staged");
+    }
+
+    // An interrupted fetch is continued in the same generation, so finished files and .part files are kept
+    public String beginFetch() throws IOException {
+        @Nullable String pending = state.getProperty("pending");
+        if (pending != null && Files.isDirectory(directory(pending))) return pending;
+
+        String id = create();
+        state.setProperty("pending", id);
+        save();
+        return id;
+    }
+
+    // Drops files a previous run of an interrupted fetch left behind that the manifest no longer lists
+    public void retain(String id, Set<Path> files, StateIndex index) throws IOException {
+        Path directory = directory(id);
+        if (!Files.isDirectory(directory)) return;
+        Set<Path> keep = new HashSet<>();
+        for (Path file : files) keep.add(file.toAbsolutePath().normalize());
+
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path file : walk.filter(Files::isRegularFile).toList()) {
+                Path normalized = file.toAbsolutePath().normalize();
+                // Partial downloads are kept for resuming as long as the file they belong to is still wanted
+                if (PartialDownload.isPartial(file) && keep.contains(PartialDownload.targetOf(normalized))) continue;
+                if (keep.contains(normalized)) continue;
+                Files.delete(file);
+                index.remove(file);
+            }
+        }
+    }
+
+    // The manifest paths are stored with the generation, anything else that ends up in its folders was put there by someone else
+    public void finishFetch(String id, Collection<String> files) throws IOException {
+        List<String> managed = files.stream().map(file -> key(Paths.get(file))).sorted().toList();
+        Storage.writeAtomically(directory(id).resolve(MANAGED_FILE), String.join("\n", managed) + "\n");
+        state.remove("pending");
+        @Nullable String staged = getStaged();
+        state.setProperty("staged", id);
+        save();
+        if (staged != null && !staged.equals(id)) discard(staged);
+    }
+
+    // Returns the live files that could not be carried over and were left in the outgoing generation
+    public List<String> activate(String id, StateIndex index) throws IOException {
+        Path target = directory(id);
+        if (!Files.isDirectory(target)) throw new IOException("Generation not found: " + id);
+        if (id.equals(getCurrent())) throw new IOException("Generation " + id + " is already active");
+        // Only a completely fetched generation or the one that was live before is known to be complete
+        if (!id.equals(getStaged()) && !id.equals(getPrevious())) {
+            throw new IOException("Generation " + id + " is not a finished fetch or the previous generation");
+        }
+
+        // The live folders become a generation of their own, which is what rollback switches back to
+        @Nullable String current = getCurrent();
+        boolean known = current != null && Files.isDirectory(directory(current));
+        String outgoing = known ? current : create();
+        Path outgoingDirectory = directory(outgoing);
+
+        // Files the live manifest did not install, like jars added by hand, are linked into the new generation. Without
+        // a record of that manifest, after a plain install, old versions cannot be told apart from them and are left behind
+        @Nullable Set<String> managed = known ? managed(current) : null;
+        List<String> left = new ArrayList<>();
+        for (String file : files(Paths.get(""))) {
+            Path carried = target.resolve(file);
+            if (Files.exists(carried) || (managed != null && managed.contains(file))) continue;
+            if (managed == null) left.add(file);
+            else ObjectCache.link(Paths.get(file), carried);
+        }
+
+        List<Move> moves = new ArrayList<>();
+        for (String folder : FOLDERS) {
+            if (Files.exists(Paths.get(folder))) moves.add(new Move(Paths.get(folder), outgoingDirectory.resolve(folder)));
+        }
+        for (String folder : FOLDERS) {
+            if (Files.exists(target.resolve(folder))) moves.add(new Move(target.resolve(folder), Paths.get(folder)));
+        }
+
+        // Each folder is a single rename, if one fails the ones already done are undone so the instance stays intact
+        int done = 0;
+        try {
+            for (; done < moves.size(); done++) {
+                Files.move(moves.get(done).from(), moves.get(done).to(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            for (int i = done - 1; i >= 0; i--) {
+                try {
+                    Files.move(moves.get(i).to(), moves.get(i).from(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException undo) {
+                    e.addSuppressed(undo);
+                }
+            }
+            throw e;
+        }
+        for (Move move : moves) index.rename(move.from(), move.to());
+
+        @Nullable String previous = getPrevious();
+        state.setProperty("current", id);
+        state.setProperty("previous", outgoing);
+        if (id.equals(getStaged())) state.remove("staged");
+        save();
+
+        if (previous != null && !Set.of(id, outgoing).contains(previous) && !previous.equals(getStaged()) && discard(previous)) {
+            index.removeAll(directory(previous));
+        }
+        return left;
+    }
+
+    private String create() throws IOException {
+        String base = LocalDateTime.now().format(ID_FORMAT);
+        String id = base;
+        for (int i = 1; Files.exists(directory(id)); i++) {
+            id = base + "-" + i;
+        }
+        Files.createDirectories(directory(id));
+        return id;
+    }
+
+    // A generation is only removed when every file in it came from its manifest or is still live, so nothing that exists
+    // nowhere else is ever deleted without being asked
+    private boolean discard(String id) {
+        Path directory = directory(id);
+        if (!Files.exists(directory)) return true;
+        try {
+            @Nullable Set<String> managed = managed(id);
+            for (String file : files(directory)) {
+                if ((managed == null || !managed.contains(file)) && !Files.exists(Paths.get(file))) {
+                    log.warn("Keeping generation {}, {} is not in its manifest or the instance", id, file);
+                    return false;
+                }
+            }
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to remove generation {}: {}", id, e.getMessage());
+            return false;
+        }
+    }
+
+    private @Nullable Set<String> managed(String id) throws IOException {
+        Path file = directory(id).resolve(MANAGED_FILE);
+        return Files.exists(file) ? new HashSet<>(Files.readAllLines(file)) : null;
+    }
+
+    // Files in the managed folders under root, as paths relative to it
+    private static List<String> files(Path root) throws IOException {
+        List<String> files = new ArrayList<>();
+        for (String folder : FOLDERS) {
+            Path directory = root.resolve(folder);
+            if (!Files.isDirectory(directory)) continue;
+            try (Stream<Path> walk = Files.walk(directory)) {
+                walk.filter(Files::isRegularFile)
+                        .filter(file -> !PartialDownload.isPartial(file))
+                        .forEach(file -> files.add(key(root.relativize(file))));
+            }
+        }
+        return files;
+    }
+
+    private static String key(Path path) {
+        return path.normalize().toString().replace(File.separatorChar, '/');
+    }
+
+    private void save() throws IOException {
+        Storage.writeAtomically(getStateFile(), out -> state.store(out, null));
+    }
+
+    private Path getStateFile() {
+        return root.resolve("state.properties");
+    }
+
+    private record Move(Path from, Path to) {}
+}
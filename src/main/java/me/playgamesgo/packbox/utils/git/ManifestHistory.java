@@ -0,0 +1,83 @@
+package me.playgamesgo.packbox.utils.git;
+
+import me.playgamesgo.packbox.utils.Manifest;
+import me.playgamesgo.packbox.utils.Storage;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public final class ManifestHistory implements AutoCloseable {
+    private final Repository repository;
+    private final String manifestPath;
+
+    private ManifestHistory(Repository repository, String manifestPath) {
+        this.repository = repository;
+        this.manifestPath = manifestPath;
+    }
+
+    public static ManifestHistory open(Path manifestFile) throws IOException {
+        Path manifest = manifestFile.toRealPath();
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().readEnvironment().findGitDir(manifest.getParent().toFile());
+        if (builder.getGitDir() == null) throw new IOException("Not inside a git repository: " + manifest.getParent());
+
+        Repository repository = builder.setMustExist(true).build();
+        if (repository.isBare()) {
+            repository.close();
+            throw new IOException("Cannot sync from a bare repository: " + builder.getGitDir());
+        }
+        Path workTree = repository.getWorkTree().toPath().toRealPath();
+        return new ManifestHistory(repository, workTree.relativize(manifest).toString().replace(File.separatorChar, '/'));
+    }
+
+    public @Nullable ObjectId resolve(String revision) throws IOException {
+        return repository.resolve(revision + "^{commit}");
+    }
+
+    public @Nullable Manifest read(ObjectId commit) throws IOException {
+        try (RevWalk walk = new RevWalk(repository)) {
+            RevCommit revision = walk.parseCommit(commit);
+            try (TreeWalk tree = TreeWalk.forPath(repository, manifestPath, revision.getTree())) {
+                if (tree == null) return null;
+                byte[] content = repository.open(tree.getObjectId(0)).getBytes();
+                return Manifest.gson.fromJson(new String(content, StandardCharsets.UTF_8), Manifest.class);
+            }
+        }
+    }
+
+    public String abbreviate(ObjectId commit) throws IOException {
+        try (ObjectReader reader = repository.newObjectReader()) {
+            return reader.abbreviate(commit).name();
+        }
+    }
+
+    public static @Nullable String lastApplied() throws IOException {
+        Path file = getStateFile();
+        if (!Files.exists(file)) return null;
+        String commit = Files.readString(file).trim();
+        return commit.isEmpty() ? null : commit;
+    }
+
+    public static void markApplied(ObjectId commit) throws IOException {
+        Storage.writeAtomically(getStateFile(), commit.name() + "\n");
+    }
+
+    private static Path getStateFile() {
+        return Storage.getLocalDirectory().resolve("synced-commit");
+    }
+
+    @Override
+    public void close() {
+        repository.close();
+    }
+}
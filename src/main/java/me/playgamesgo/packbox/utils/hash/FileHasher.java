@@ -0,0 +1,90 @@
+package me.playgamesgo.packbox.utils.hash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+
+public final class FileHasher {
+    private static final int BUFFER_SIZE = 4 << 20;
+    // One direct buffer per hashing thread keeps memory flat no matter how large the scanned files are
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    public static FileHashes hash(Path path) throws IOException {
+        MessageDigest sha1 = newDigest("SHA-1");
+        MessageDigest sha512 = newDigest("SHA-512");
+        ByteBuffer buffer = BUFFER.get();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] normalizedLength = {0};
+            stream(channel, buffer, chunk -> {
+                sha1.update(chunk.duplicate());
+                sha512.update(chunk.duplicate());
+                normalizedLength[0] += Fingerprint.countNonWhitespace(chunk);
+            });
+            long fingerprint = fingerprint(channel, buffer, normalizedLength[0]);
+
+            HexFormat hex = HexFormat.of();
+            return new FileHashes(hex.formatHex(sha1.digest()), hex.formatHex(sha512.digest()), fingerprint);
+        }
+    }
+
+    public static String sha1(Path path) throws IOException {
+        MessageDigest sha1 = newDigest("SHA-1");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            stream(channel, BUFFER.get(), sha1::update);
+        }
+        return HexFormat.of().formatHex(sha1.digest());
+    }
+
+    public static long fingerprint(Path path) throws IOException {
+        ByteBuffer buffer = BUFFER.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] normalizedLength = {0};
+            stream(channel, buffer, chunk -> normalizedLength[0] += Fingerprint.countNonWhitespace(chunk));
+            return fingerprint(channel, buffer, normalizedLength[0]);
+        }
+    }
+
+    private static long fingerprint(FileChannel channel, ByteBuffer buffer, long normalizedLength) throws IOException {
+        // The fingerprint is seeded with the normalized length, so it needs a second pass over the data
+        Fingerprint fingerprint = new Fingerprint(normalizedLength);
+        if (channel.size() <= buffer.capacity()) {
+            // Files that fit the buffer (most mods) are still in it from the first pass
+            fingerprint.update(buffer.duplicate().rewind());
+        } else {
+            stream(channel, buffer, fingerprint::update);
+        }
+        return fingerprint.finish();
+    }
+
+    private static void stream(FileChannel channel, ByteBuffer buffer, Consumer<ByteBuffer> consumer) throws IOException {
+        buffer.clear().flip();
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) == -1) break;
+            }
+            buffer.flip();
+            if (!buffer.hasRemaining()) break;
+
+            position += buffer.remaining();
+            consumer.accept(buffer.duplicate());
+        }
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
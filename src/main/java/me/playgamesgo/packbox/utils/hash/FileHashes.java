@@ -0,0 +1,3 @@
+package me.playgamesgo.packbox.utils.hash;
+
+public record FileHashes(String sha1, String sha512, long fingerprint) {}
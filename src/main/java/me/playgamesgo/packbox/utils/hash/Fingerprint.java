@@ -0,0 +1,126 @@
+package me.playgamesgo.packbox.utils.hash;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public final class Fingerprint {
+    private static final int MULTIPLEX = 1540483477;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private int hash;
+    private int pending;
+    private int pendingBits;
+
+    public Fingerprint(long normalizedLength) {
+        this.hash = 1 ^ (int) normalizedLength;
+    }
+
+    public void update(ByteBuffer buffer) {
+        ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int length = data.remaining();
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            long word = data.getLong(i);
+            long mask = whitespaceMask(word);
+            if (mask != 0) {
+                // Pack the payload bytes together and append them to the pending word in one step
+                long keep = ~mask & HIGH_BITS;
+                append(Long.compress(word, (keep >>> 7) * 0xFF), Long.bitCount(keep) << 3);
+                continue;
+            }
+
+            // Eight payload bytes: complete the pending word, mix a full one and carry the rest over
+            if (pendingBits == 0) {
+                mix((int) word);
+                mix((int) (word >>> 32));
+            } else {
+                mix(pending | (int) (word << pendingBits));
+                mix((int) (word >>> (32 - pendingBits)));
+                pending = (int) (word >>> (64 - pendingBits));
+            }
+        }
+        for (; i < length; i++) {
+            update(data.get(i));
+        }
+        buffer.position(buffer.limit());
+    }
+
+    public long finish() {
+        int result = hash;
+        if (pendingBits > 0) {
+            result = (result ^ pending) * MULTIPLEX;
+        }
+
+        int num6 = (result ^ (result >>> 13)) * MULTIPLEX;
+        return Integer.toUnsignedLong(num6 ^ (num6 >>> 15));
+    }
+
+    public static long countNonWhitespace(ByteBuffer buffer) {
+        ByteBuffer data = buffer.slice();
+        int length = data.remaining();
+        long whitespace = 0;
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            whitespace += Long.bitCount(whitespaceMask(data.getLong(i)));
+        }
+        for (; i < length; i++) {
+            if (isWhitespaceCharacter(data.get(i))) ++whitespace;
+        }
+        buffer.position(buffer.limit());
+        return length - whitespace;
+    }
+
+    private void update(byte b) {
+        if (isWhitespaceCharacter(b)) return;
+
+        pending |= (b & 0xFF) << pendingBits;
+        pendingBits += 8;
+        if (pendingBits == 32) {
+            mix(pending);
+            pending = 0;
+            pendingBits = 0;
+        }
+    }
+
+    private void append(long bytes, int bits) {
+        int total = pendingBits + bits;
+        if (total < 32) {
+            pending |= (int) (bytes << pendingBits);
+            pendingBits = total;
+            return;
+        }
+
+        mix(pending | (int) (bytes << pendingBits));
+        long rest = bytes >>> (32 - pendingBits);
+        total -= 32;
+        if (total >= 32) {
+            mix((int) rest);
+            rest >>>= 32;
+            total -= 32;
+        }
+        pending = (int) rest;
+        pendingBits = total;
+    }
+
+    private void mix(int word) {
+        int num6 = word * MULTIPLEX;
+        int num7 = (num6 ^ (num6 >>> 24)) * MULTIPLEX;
+        hash = (hash * MULTIPLEX) ^ num7;
+    }
+
+    // Sets the high bit of every byte of the word that is 9, 10, 13 or 32
+    private static long whitespaceMask(long word) {
+        return zeroBytes(word ^ (ONES * 9)) | zeroBytes(word ^ (ONES * 10))
+                | zeroBytes(word ^ (ONES * 13)) | zeroBytes(word ^ (ONES * 32));
+    }
+
+    private static long zeroBytes(long word) {
+        return ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+    }
+
+    private static boolean isWhitespaceCharacter(byte b) {
+        return b == 9 || b == 10 || b == 13 || b == 32;
+    }
+}
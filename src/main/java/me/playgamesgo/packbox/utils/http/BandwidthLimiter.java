@@ -0,0 +1,39 @@
+package me.playgamesgo.packbox.utils.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+public final class BandwidthLimiter {
+    private static final long MIN_BURST = 64 << 10;
+
+    private final double capacity;
+    private final double tokensPerNano;
+    // Fair, so streams take turns in the order they asked instead of whoever wakes up first
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private double tokens;
+    private long refilled;
+
+    public BandwidthLimiter(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) throw new IllegalArgumentException("Rate must be positive: " + bytesPerSecond);
+        // A tenth of a second worth of data, so a stream that idled cannot burst far above the limit
+        this.capacity = Math.max(MIN_BURST, bytesPerSecond / 10.0);
+        this.tokensPerNano = bytesPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.refilled = System.nanoTime();
+    }
+
+    // Chunks are accounted after they arrived, a chunk larger than the balance puts the bucket in debt and the caller
+    // waits it off while holding the lock, which makes every other stream wait its turn behind it
+    public void acquire(long bytes) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilled) * tokensPerNano);
+            refilled = now;
+            tokens -= bytes;
+            if (tokens < 0) TimeUnit.NANOSECONDS.sleep((long) Math.ceil(-tokens / tokensPerNano));
+        } finally {
+            lock.unlock();
+        }
+    }
+}
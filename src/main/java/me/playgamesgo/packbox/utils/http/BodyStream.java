@@ -0,0 +1,106 @@
+package me.playgamesgo.packbox.utils.http;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Hands out the buffers the client received as they are, instead of copying them into a byte[] like an InputStream does
+public final class BodyStream implements HttpResponse.BodySubscriber<BodyStream>, Closeable {
+    private static final List<ByteBuffer> END = new ArrayList<>(0);
+
+    private final BlockingQueue<List<ByteBuffer>> queue = new LinkedBlockingQueue<>();
+    private final URI uri;
+    private final long readTimeout;
+    private volatile @Nullable Flow.Subscription subscription;
+    private volatile @Nullable Throwable error;
+    private boolean finished;
+
+    public BodyStream(URI uri, Duration readTimeout) {
+        this.uri = uri;
+        this.readTimeout = readTimeout.toNanos();
+    }
+
+    // Returns the next chunk of the body, or null once it is complete
+    public ByteBuffer @Nullable [] next() throws IOException {
+        if (finished) return null;
+        @Nullable List<ByteBuffer> buffers;
+        try {
+            buffers = queue.poll(readTimeout, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new InterruptedIOException("Interrupted while reading response body");
+        }
+        // A stalled server fails the attempt, so the caller can retry and resume instead of waiting forever
+        if (buffers == null) {
+            close();
+            throw new HttpTimeoutException("No data received from " + uri + " for " + TimeUnit.NANOSECONDS.toSeconds(readTimeout) + " seconds");
+        }
+
+        if (buffers == END) {
+            finished = true;
+            @Nullable Throwable failure = error;
+            if (failure == null) return null;
+            throw failure instanceof IOException io ? io : new IOException(failure);
+        }
+        // Only one chunk is requested ahead, so a slow reader holds back the sender instead of buffering the whole file
+        @Nullable Flow.Subscription current = subscription;
+        if (current != null) current.request(1);
+        return buffers.toArray(ByteBuffer[]::new);
+    }
+
+    @Override
+    public CompletionStage<BodyStream> getBody() {
+        return CompletableFuture.completedFuture(this);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        queue.add(buffers);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        queue.add(END);
+    }
+
+    @Override
+    public void onComplete() {
+        queue.add(END);
+    }
+
+    @Override
+    public void close() {
+        if (finished) return;
+        finished = true;
+        @Nullable Flow.Subscription current = subscription;
+        if (current != null) current.cancel();
+        queue.clear();
+    }
+}
@@ -0,0 +1,62 @@
+package me.playgamesgo.packbox.utils.http;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public final class CircuitBreaker {
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long OPEN_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private final String host;
+    private int failures;
+    private boolean open;
+    private boolean probing;
+    private long openedAt;
+
+    private CircuitBreaker(String host) {
+        this.host = host;
+    }
+
+    public static CircuitBreaker forHost(String host) {
+        return breakers.computeIfAbsent(host, CircuitBreaker::new);
+    }
+
+    public synchronized void acquire() throws OpenException {
+        if (!open) return;
+        // After the cool-down a single request is let through to probe whether the host recovered
+        if (!probing && System.nanoTime() - openedAt >= OPEN_NANOS) {
+            probing = true;
+            return;
+        }
+        throw new OpenException(host);
+    }
+
+    public synchronized void recordSuccess() {
+        failures = 0;
+        open = false;
+        probing = false;
+    }
+
+    // The attempt said nothing about the host, a probe it took is handed to the next request
+    public synchronized void release() {
+        probing = false;
+    }
+
+    public synchronized void recordFailure() {
+        failures++;
+        if (probing || failures >= FAILURE_THRESHOLD) {
+            open = true;
+            probing = false;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    public static final class OpenException extends IOException {
+        public OpenException(String host) {
+            super("Too many failures talking to " + host + ", skipping it for now");
+        }
+    }
+}
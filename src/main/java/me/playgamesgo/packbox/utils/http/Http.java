@@ -0,0 +1,115 @@
+package me.playgamesgo.packbox.utils.http;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+@Slf4j
+public final class Http {
+    public static final String USER_AGENT = "packbox/1.0.0 (github.com/playgamesgo/PackBox)";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    // The request timeout ends once headers arrive, a body that stops flowing is caught by this one
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(30);
+    private static final int MAX_THROTTLED_ATTEMPTS = 5;
+
+    // One client for the whole process, so TLS sessions and HTTP/2 connections are reused across all calls
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .build();
+
+    public static HttpRequest.Builder request(String url) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("User-Agent", USER_AGENT);
+    }
+
+    // API responses are compressed on the wire, the JDK client only decodes gzip so that is all we advertise
+    public static HttpResponse<String> send(HttpRequest.Builder request) throws IOException {
+        return send(request.setHeader("Accept-Encoding", "gzip").build());
+    }
+
+    public static HttpResponse<String> send(HttpRequest.Builder request, RateLimiter limiter) throws IOException {
+        HttpRequest httpRequest = request.setHeader("Accept-Encoding", "gzip").build();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for " + httpRequest.uri(), e);
+            }
+
+            HttpResponse<String> response = send(httpRequest);
+            limiter.update(response.statusCode(), response.headers());
+            if (response.statusCode() != 429) return response;
+            if (attempt >= MAX_THROTTLED_ATTEMPTS) throw new ThrottledException(httpRequest.uri().getHost());
+            log.warn("Rate limited by {}, waiting before retrying ({}/{})", httpRequest.uri().getHost(), attempt, MAX_THROTTLED_ATTEMPTS);
+        }
+    }
+
+    private static HttpResponse<String> send(HttpRequest httpRequest) throws IOException {
+        try {
+            return CLIENT.send(httpRequest, info -> HttpResponse.BodySubscribers.mapping(
+                    HttpResponse.BodySubscribers.ofByteArray(), body -> decode(body, info.headers())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + httpRequest.uri(), e);
+        }
+    }
+
+    // Raw body for downloads, which are requested uncompressed so byte ranges and lengths stay meaningful
+    public static HttpResponse<BodyStream> stream(HttpRequest request) throws IOException {
+        try {
+            return CLIENT.send(request, info -> new BodyStream(request.uri(), READ_TIMEOUT));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + request.uri(), e);
+        }
+    }
+
+    private static String decode(byte[] body, HttpHeaders headers) {
+        String encoding = headers.firstValue("Content-Encoding").orElse("identity").trim();
+        try {
+            if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip")) {
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    body = in.readAllBytes();
+                }
+            } else if (!encoding.equalsIgnoreCase("identity")) {
+                throw new IOException("Unsupported Content-Encoding: " + encoding);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    public static final class ThrottledException extends IOException {
+        public ThrottledException(String host) {
+            super("Still rate limited by " + host + " after " + MAX_THROTTLED_ATTEMPTS + " attempts");
+        }
+    }
+
+    public static final class StatusException extends IOException {
+        @Getter private final int status;
+
+        public StatusException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
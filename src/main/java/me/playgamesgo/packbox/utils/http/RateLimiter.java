@@ -0,0 +1,91 @@
+package me.playgamesgo.packbox.utils.http;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+public final class RateLimiter {
+    private static final long DEFAULT_BACKOFF = TimeUnit.SECONDS.toNanos(1);
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long refilled;
+    private long blockedUntil;
+
+    public RateLimiter(int requests, Duration per) {
+        this.capacity = requests;
+        this.tokensPerNano = requests / (double) per.toNanos();
+        this.tokens = requests;
+        this.refilled = System.nanoTime();
+        this.blockedUntil = refilled;
+    }
+
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                refill(now);
+                if (now - blockedUntil < 0) {
+                    wait = blockedUntil - now;
+                } else if (tokens >= 1) {
+                    tokens--;
+                    return;
+                } else {
+                    wait = (long) Math.ceil((1 - tokens) / tokensPerNano);
+                }
+            }
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    public synchronized void update(int status, HttpHeaders headers) {
+        long now = System.nanoTime();
+        refill(now);
+
+        // The server's own count wins over ours, it also sees requests from other processes sharing the IP
+        OptionalLong remaining = headers.firstValueAsLong("X-Ratelimit-Remaining");
+        OptionalLong reset = headers.firstValueAsLong("X-Ratelimit-Reset");
+        if (remaining.isPresent()) tokens = Math.min(tokens, remaining.getAsLong());
+        if (remaining.isPresent() && remaining.getAsLong() <= 0 && reset.isPresent()) {
+            blockFor(now, TimeUnit.SECONDS.toNanos(reset.getAsLong()));
+        }
+
+        if (status == 429) {
+            tokens = 0;
+            long retryAfter = retryAfter(headers);
+            if (retryAfter < 0 && reset.isPresent()) retryAfter = TimeUnit.SECONDS.toNanos(reset.getAsLong());
+            blockFor(now, retryAfter < 0 ? DEFAULT_BACKOFF : retryAfter);
+        }
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - refilled) * tokensPerNano);
+        refilled = now;
+    }
+
+    private void blockFor(long now, long nanos) {
+        if (now + nanos - blockedUntil > 0) blockedUntil = now + nanos;
+    }
+
+    // Retry-After is either a number of seconds or an HTTP date
+    private static long retryAfter(HttpHeaders headers) {
+        String value = headers.firstValue("Retry-After").orElse(null);
+        if (value == null) return -1;
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toNanos());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package me.playgamesgo.packbox.utils.http;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.nio.file.FileSystemException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+public final class RetryPolicy {
+    public static final RetryPolicy DEFAULT = new RetryPolicy(4, Duration.ofMillis(500), Duration.ofSeconds(15));
+
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+
+    public RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelay = baseDelay.toMillis();
+        this.maxDelay = maxDelay.toMillis();
+    }
+
+    // Requests that are not idempotent are only retried when they provably never reached the server
+    public <T> T call(URI uri, boolean idempotent, Call<T> call) throws IOException {
+        CircuitBreaker breaker = CircuitBreaker.forHost(uri.getHost());
+        for (int attempt = 1; ; attempt++) {
+            breaker.acquire();
+            try {
+                T result = call.call();
+                breaker.recordSuccess();
+                return result;
+            } catch (IOException e) {
+                // Errors writing the file locally are the same whatever the host does, retrying or blaming it cannot help
+                if (e instanceof FileSystemException) {
+                    breaker.release();
+                    throw e;
+                }
+                if (isHostFailure(e)) breaker.recordFailure();
+                else breaker.recordSuccess();
+
+                if (attempt >= maxAttempts || !isRetryable(e, idempotent)) throw e;
+                long delay = delay(attempt);
+                log.warn("Request to {} failed, retrying in {} ms ({}/{}): {}", uri.getHost(), delay, attempt, maxAttempts, e.getMessage());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    e.addSuppressed(interrupted);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Full jitter, so clients that failed together do not retry together
+    private long delay(int attempt) {
+        long cap = Math.min(maxDelay, baseDelay << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    private static boolean isRetryable(IOException e, boolean idempotent) {
+        if (e instanceof CircuitBreaker.OpenException || e instanceof Http.ThrottledException) return false;
+        if (e instanceof Http.StatusException status) {
+            return idempotent && (status.getStatus() >= 500 || status.getStatus() == 408);
+        }
+        if (e instanceof UnknownHostException) return false;
+        return idempotent || e instanceof ConnectException || e instanceof HttpConnectTimeoutException;
+    }
+
+    // A host that answers, even with 404 or 429, is alive, only transport errors and server errors trip the breaker
+    private static boolean isHostFailure(IOException e) {
+        if (e instanceof CircuitBreaker.OpenException || e instanceof Http.ThrottledException) return false;
+        if (e instanceof Http.StatusException status) return status.getStatus() >= 500;
+        return true;
+    }
+
+    public interface Call<T> {
+        T call() throws IOException;
+    }
+}
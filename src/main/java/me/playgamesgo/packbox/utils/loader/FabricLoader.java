@@ -16,40 +16,31 @@ import org.jline.consoleui.elements.items.ListItemIF;
 import org.jline.consoleui.elements.items.impl.ListItem;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.List;
 
 public final class FabricLoader {
+    private static final String GAME_VERSIONS = "https://meta.fabricmc.net/v2/versions/game";
+    private static final String LOADER_VERSIONS = "https://meta.fabricmc.net/v2/versions/loader";
     private static final Gson gson = new GsonBuilder()
             .registerTypeAdapter(GameVersion.class, new GameVersion())
             .registerTypeAdapter(LoaderVersion.class, new LoaderVersion())
             .create();
 
     private static List<GameVersion> getMinecraftVersions() {
-        HttpClient client = HttpClient.newHttpClient();
-        String url = "https://meta.fabricmc.net/v2/versions/game";
-        String response = client.sendAsync(
-                HttpRequest.newBuilder().uri(URI.create(url)).build(),
-                HttpResponse.BodyHandlers.ofString()
-        ).join().body();
-        client.close();
+        String response = LoaderMetadata.fetch(GAME_VERSIONS);
         return List.of(gson.fromJson(response, GameVersion[].class));
     }
 
     private static List<LoaderVersion> getLoaderVersion() {
-        HttpClient client = HttpClient.newHttpClient();
-        String url = "https://meta.fabricmc.net/v2/versions/loader";
-        String response = client.sendAsync(
-                HttpRequest.newBuilder().uri(URI.create(url)).build(),
-                HttpResponse.BodyHandlers.ofString()
-        ).join().body();
-        client.close();
+        String response = LoaderMetadata.fetch(LOADER_VERSIONS);
         return List.of(gson.fromJson(response, LoaderVersion[].class));
     }
 
+    public static void prefetch() {
+        LoaderMetadata.load(GAME_VERSIONS);
+        LoaderMetadata.load(LOADER_VERSIONS);
+    }
+
     public static PromptableElementIF getMinecraftVersionPrompt() {
         List<GameVersion> versions = getMinecraftVersions();
         return new ListChoice(
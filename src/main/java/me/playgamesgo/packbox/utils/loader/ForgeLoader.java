@@ -8,28 +8,23 @@ import org.jline.consoleui.elements.PromptableElementIF;
 import org.jline.consoleui.elements.items.ListItemIF;
 import org.jline.consoleui.elements.items.impl.ListItem;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.List;
 import java.util.Map;
 
 public final class ForgeLoader {
+    private static final String VERSIONS = "https://files.minecraftforge.net/net/minecraftforge/forge/maven-metadata.json";
     private static final Gson gson = new Gson();
 
     private static Map<String, List<String>> getVersionsMap() {
-        HttpClient client = HttpClient.newHttpClient();
-        String url = "https://files.minecraftforge.net/net/minecraftforge/forge/maven-metadata.json";
-        String response = client.sendAsync(
-                HttpRequest.newBuilder().uri(URI.create(url)).build(),
-                HttpResponse.BodyHandlers.ofString()
-        ).join().body();
-        client.close();
+        String response = LoaderMetadata.fetch(VERSIONS);
 
         return gson.fromJson(response, new TypeToken<Map<String, List<String>>>(){}.getType());
     }
 
+    public static void prefetch() {
+        LoaderMetadata.load(VERSIONS);
+    }
+
     public static PromptableElementIF getMinecraftVersionPrompt() {
         Map<String, List<String>> versions = getVersionsMap();
 
@@ -0,0 +1,122 @@
+package me.playgamesgo.packbox.utils.loader;
+
+import lombok.extern.slf4j.Slf4j;
+import me.playgamesgo.packbox.utils.Storage;
+import me.playgamesgo.packbox.utils.http.Http;
+import me.playgamesgo.packbox.utils.http.RetryPolicy;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+final class LoaderMetadata {
+    // Recently fetched documents are used as they are, older ones are revalidated with a conditional request
+    private static final long FRESH_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final Map<String, CompletableFuture<String>> documents = new ConcurrentHashMap<>();
+
+    // Loader lists are read from prompt callbacks, which cannot throw checked exceptions
+    static String fetch(String url) {
+        try {
+            return load(url).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) throw io;
+            throw e;
+        }
+    }
+
+    static CompletableFuture<String> load(String url) {
+        CompletableFuture<String> document = documents.computeIfAbsent(url, key -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return read(key);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to fetch " + key, e);
+            }
+        }));
+        // A failed fetch is not memoized, the next caller tries again
+        document.whenComplete((body, error) -> {
+            if (error != null) documents.remove(url, document);
+        });
+        return document;
+    }
+
+    private static String read(String url) throws IOException {
+        Path directory = Storage.getCacheDirectory().resolve("meta");
+        String name = key(url);
+        Path body = directory.resolve(name + ".json");
+        Path meta = directory.resolve(name + ".properties");
+
+        Properties properties = new Properties();
+        boolean cached = Files.exists(body) && Files.exists(meta);
+        if (cached) {
+            try (InputStream in = Files.newInputStream(meta)) {
+                properties.load(in);
+            }
+            long fetched = Long.parseLong(properties.getProperty("fetched", "0"));
+            if (System.currentTimeMillis() - fetched < FRESH_MILLIS) return Files.readString(body);
+        }
+
+        HttpRequest.Builder request = Http.request(url).header("Accept", "application/json");
+        if (cached) {
+            @Nullable String etag = properties.getProperty("etag");
+            @Nullable String lastModified = properties.getProperty("lastModified");
+            if (etag != null) request.header("If-None-Match", etag);
+            if (lastModified != null) request.header("If-Modified-Since", lastModified);
+        }
+
+        HttpResponse<String> response;
+        try {
+            // With a stored copy to fall back on there is no point in waiting for retries
+            response = cached ? Http.send(request) : RetryPolicy.DEFAULT.call(URI.create(url), true, () -> Http.send(request));
+        } catch (IOException e) {
+            if (!cached) throw e;
+            log.warn("Failed to refresh {}, using the cached copy: {}", url, e.getMessage());
+            return Files.readString(body);
+        }
+
+        if (cached && response.statusCode() == 304) {
+            properties.setProperty("fetched", Long.toString(System.currentTimeMillis()));
+            Storage.writeAtomically(meta, out -> properties.store(out, null));
+            return Files.readString(body);
+        }
+        if (response.statusCode() != 200) {
+            if (!cached) throw new Http.StatusException(response.statusCode(), "HTTP " + response.statusCode() + " for " + url);
+            log.warn("Failed to refresh {} (HTTP {}), using the cached copy", url, response.statusCode());
+            return Files.readString(body);
+        }
+
+        Properties updated = new Properties();
+        updated.setProperty("url", url);
+        updated.setProperty("fetched", Long.toString(System.currentTimeMillis()));
+        response.headers().firstValue("ETag").ifPresent(etag -> updated.setProperty("etag", etag));
+        response.headers().firstValue("Last-Modified").ifPresent(date -> updated.setProperty("lastModified", date));
+
+        Storage.writeAtomically(body, response.body());
+        Storage.writeAtomically(meta, out -> updated.store(out, null));
+        return response.body();
+    }
+
+    private static String key(String url) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
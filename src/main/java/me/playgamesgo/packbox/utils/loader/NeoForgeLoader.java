@@ -16,29 +16,24 @@ import org.jline.consoleui.elements.items.ListItemIF;
 import org.jline.consoleui.elements.items.impl.ListItem;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.ArrayList;
 import java.util.List;
 
 public final class NeoForgeLoader {
+    private static final String VERSIONS = "https://maven.neoforged.net/api/maven/versions/releases/net/neoforged/neoforge";
     private static final Gson gson = new GsonBuilder()
             .registerTypeAdapter(NeoForgeResponse.class, new NeoForgeResponse())
             .create();
 
     private static List<String> getVersions() {
-        HttpClient client = HttpClient.newHttpClient();
-        String url = "https://maven.neoforged.net/api/maven/versions/releases/net/neoforged/neoforge";
-        String response = client.sendAsync(
-                HttpRequest.newBuilder().uri(URI.create(url)).build(),
-                HttpResponse.BodyHandlers.ofString()
-        ).join().body();
-        client.close();
+        String response = LoaderMetadata.fetch(VERSIONS);
         return gson.fromJson(response, NeoForgeResponse.class).versions;
     }
 
+    public static void prefetch() {
+        LoaderMetadata.load(VERSIONS);
+    }
+
     public static PromptableElementIF getMinecraftVersionPrompt() {
         List<String> versions = getVersions();
         return new ListChoice(
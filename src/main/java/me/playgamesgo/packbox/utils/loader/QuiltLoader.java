@@ -8,40 +8,31 @@ import org.jline.consoleui.elements.PromptableElementIF;
 import org.jline.consoleui.elements.items.ListItemIF;
 import org.jline.consoleui.elements.items.impl.ListItem;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.List;
 
 public final class QuiltLoader {
+    private static final String GAME_VERSIONS = "https://meta.quiltmc.org/v3/versions/game";
+    private static final String LOADER_VERSIONS = "https://meta.quiltmc.org/v3/versions/loader";
     private static final Gson gson = new GsonBuilder()
             .registerTypeAdapter(FabricLoader.GameVersion.class, new FabricLoader.GameVersion())
             .registerTypeAdapter(FabricLoader.LoaderVersion.class, new FabricLoader.LoaderVersion())
             .create();
 
     private static List<FabricLoader.GameVersion> getMinecraftVersions() {
-        HttpClient client = HttpClient.newHttpClient();
-        String url = "https://meta.quiltmc.org/v3/versions/game";
-        String response = client.sendAsync(
-                HttpRequest.newBuilder().uri(URI.create(url)).build(),
-                HttpResponse.BodyHandlers.ofString()
-        ).join().body();
-        client.close();
+        String response = LoaderMetadata.fetch(GAME_VERSIONS);
         return List.of(gson.fromJson(response, FabricLoader.GameVersion[].class));
     }
 
     private static List<FabricLoader.LoaderVersion> getLoaderVersion() {
-        HttpClient client = HttpClient.newHttpClient();
-        String url = "https://meta.quiltmc.org/v3/versions/loader";
-        String response = client.sendAsync(
-                HttpRequest.newBuilder().uri(URI.create(url)).build(),
-                HttpResponse.BodyHandlers.ofString()
-        ).join().body();
-        client.close();
+        String response = LoaderMetadata.fetch(LOADER_VERSIONS);
         return List.of(gson.fromJson(response, FabricLoader.LoaderVersion[].class));
     }
 
+    public static void prefetch() {
+        LoaderMetadata.load(GAME_VERSIONS);
+        LoaderMetadata.load(LOADER_VERSIONS);
+    }
+
     public static PromptableElementIF getMinecraftVersionPrompt() {
         List<FabricLoader.GameVersion> versions = getMinecraftVersions();
         return new ListChoice(
@@ -4,115 +4,74 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import me.playgamesgo.packbox.utils.Manifest;
-import org.jetbrains.annotations.Nullable;
+import me.playgamesgo.packbox.utils.hash.FileHashes;
+import me.playgamesgo.packbox.utils.http.Http;
+import me.playgamesgo.packbox.utils.http.RateLimiter;
+import me.playgamesgo.packbox.utils.http.RetryPolicy;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
-@Slf4j
 public final class CurseForge {
-    public static @Nullable Manifest.Mod getMod(File file, String token) {
-        byte[] fileBytes;
-        try {
-            fileBytes = Files.readAllBytes(file.toPath());
-        } catch (IOException e) {
-            log.error("Failed to read file: {}", file.getAbsolutePath(), e);
-            return null;
+    private static final URI FINGERPRINTS = URI.create("https://api.curseforge.com/v1/fingerprints");
+    private static final RateLimiter RATE_LIMIT = new RateLimiter(120, Duration.ofMinutes(1));
+
+    public static Map<File, Manifest.Mod> getMods(Map<File, FileHashes> files, String token) throws IOException {
+        Map<File, Manifest.Mod> mods = new HashMap<>();
+        Map<Long, List<File>> fingerprints = new HashMap<>();
+        for (Map.Entry<File, FileHashes> file : files.entrySet()) {
+            fingerprints.computeIfAbsent(file.getValue().fingerprint(), key -> new ArrayList<>()).add(file.getKey());
         }
-        long fingerprint = Integer.toUnsignedLong(computeFingerprint(fileBytes));
+        if (fingerprints.isEmpty()) return mods;
 
         FingerprintRequest request = new FingerprintRequest();
-        request.getFingerprints().add(fingerprint);
+        request.getFingerprints().addAll(fingerprints.keySet());
         String requestBody = FingerprintRequest.gson.toJson(request);
 
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest httpRequest = HttpRequest.newBuilder()
-                .uri(URI.create("https://api.curseforge.com/v1/fingerprints"))
-                .header("Accept", "application/json")
-                .header("Content-Type", "application/json")
-                .header("x-api-key", token)
-                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                .build();
-        HttpResponse<String> response;
-        try {
-            response = client.send(httpRequest, HttpResponse.BodyHandlers.ofString());
-        } catch (IOException | InterruptedException e) {
-            log.error("Failed to send request to CurseForge API: {}", e.getMessage());
-            return null;
-        }
-        client.close();
-
-        if (response == null || response.body().isEmpty() || response.statusCode() != 200) return null;
-        CurseForgeResponse curseForgeResponse = CurseForgeResponse.gson.fromJson(response.body(), CurseForgeResponse.class);
-        if (curseForgeResponse.getData().getExactMatches().isEmpty()) return null;
-        Manifest.Mod mod = new Manifest.Mod();
-        mod.setPath(file.getPath());
-        mod.setUrl(curseForgeResponse.getData().getExactMatches().getFirst().getFile().getDownloadUrl());
-        mod.setSource(Manifest.Source.CURSEFORGE);
-        mod.setSha1(Optional.ofNullable(Modrinth.createSha1(file)).orElseThrow());
-        return mod;
-    }
-
-    private static int computeFingerprint(byte[] buffer) {
-        final int mask = 0xFFFFFFFF;
-        final int multiplex = 1540483477;
+        // The lookup only reads, so it is safe to retry even though it is a POST
+        HttpResponse<String> response = RetryPolicy.DEFAULT.call(FINGERPRINTS, true, () -> {
+            HttpResponse<String> result = Http.send(Http.request(FINGERPRINTS.toString())
+                    .header("Accept", "application/json")
+                    .header("Content-Type", "application/json")
+                    .header("x-api-key", token)
+                    .POST(HttpRequest.BodyPublishers.ofString(requestBody)), RATE_LIMIT);
 
-        int num1 = computeNormalizedLength(buffer);
-        int num2 = 1 ^ num1;
-        int num3 = 0;
-        int num4 = 0;
-
-        for (byte b : buffer) {
-            if (!isWhitespaceCharacter(b)) {
-                num3 |= ((b & 0xFF) << num4) & mask;
-                num4 += 8;
-                if (num4 == 32) {
-                    int num6 = (num3 * multiplex) & mask;
-                    int num7 = ((num6 ^ (num6 >>> 24)) * multiplex) & mask;
-
-                    num2 = ((num2 * multiplex) ^ num7) & mask;
-                    num3 = 0;
-                    num4 = 0;
-                }
+            if (result.statusCode() != 200) {
+                throw new Http.StatusException(result.statusCode(), "CurseForge API returned HTTP " + result.statusCode());
             }
-        }
-
-        if (num4 > 0) {
-            num2 = ((num2 ^ num3) * multiplex) & mask;
-        }
-
-        int num6 = ((num2 ^ (num2 >>> 13)) * multiplex) & mask;
-
-        return num6 ^ (num6 >>> 15);
-    }
-
-    private static int computeNormalizedLength(byte[] buffer) {
-        int count = 0;
-        for (byte b : buffer) {
-            if (!isWhitespaceCharacter(b)) {
-                ++count;
+            return result;
+        });
+        if (response.body().isEmpty()) return mods;
+        CurseForgeResponse curseForgeResponse = CurseForgeResponse.gson.fromJson(response.body(), CurseForgeResponse.class);
+        for (CurseForgeResponse.ExactMatch match : curseForgeResponse.getData().getExactMatches()) {
+            if (match.getFile() == null || match.getFile().getDownloadUrl() == null) continue;
+            for (File file : fingerprints.getOrDefault(match.getFile().getFileFingerprint(), List.of())) {
+                if (mods.containsKey(file)) continue;
+
+                Manifest.Mod mod = new Manifest.Mod();
+                mod.setPath(file.getPath());
+                mod.setUrl(match.getFile().getDownloadUrl());
+                mod.setSource(Manifest.Source.CURSEFORGE);
+                mod.setSha1(files.get(file).sha1());
+                mods.put(file, mod);
             }
         }
-        return count;
-    }
-
-    private static boolean isWhitespaceCharacter(byte b) {
-        return b == 9 || b == 10 || b == 13 || b == 32;
+        return mods;
     }
 
     @EqualsAndHashCode(callSuper = true)
@@ -183,6 +142,7 @@ public final class CurseForge {
                 out.name("file");
                 out.beginObject();
                 out.name("downloadUrl").value(match.getFile().getDownloadUrl());
+                out.name("fileFingerprint").value(match.getFile().getFileFingerprint());
                 out.endObject();
                 out.endObject();
             }
@@ -217,8 +177,10 @@ public final class CurseForge {
                                         File file = new File();
                                         while (in.hasNext()) {
                                             String fileField = in.nextName();
-                                            if ("downloadUrl".equals(fileField)) {
+                                            if ("downloadUrl".equals(fileField) && in.peek() != JsonToken.NULL) {
                                                 file.setDownloadUrl(in.nextString());
+                                            } else if ("fileFingerprint".equals(fileField)) {
+                                                file.setFileFingerprint(in.nextLong());
                                             } else {
                                                 in.skipValue();
                                             }
@@ -267,6 +229,7 @@ public final class CurseForge {
         @NoArgsConstructor
         public static class File {
             private String downloadUrl;
+            private long fileFingerprint;
         }
     }
 }
@@ -3,73 +3,115 @@ package me.playgamesgo.packbox.utils.source;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import me.playgamesgo.packbox.utils.Manifest;
+import me.playgamesgo.packbox.utils.hash.FileHashes;
+import me.playgamesgo.packbox.utils.http.Http;
+import me.playgamesgo.packbox.utils.http.RateLimiter;
+import me.playgamesgo.packbox.utils.http.RetryPolicy;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-@Slf4j
 public final class Modrinth {
-    public static @Nullable Manifest.Mod getMod(File file) {
-        @Nullable String sha1 = createSha1(file);
-        if (sha1 == null) {
-            log.error("Failed to create SHA-1 hash for file: {}", file.getAbsolutePath());
-            return null;
-        }
+    private static final URI VERSION_FILES = URI.create("https://api.modrinth.com/v2/version_files");
+    private static final RateLimiter RATE_LIMIT = new RateLimiter(300, Duration.ofMinutes(1));
+
+    public static Map<File, Manifest.Mod> getMods(Map<File, FileHashes> files) throws IOException {
+        Map<File, Manifest.Mod> mods = new HashMap<>();
+        if (files.isEmpty()) return mods;
+
+        HashesRequest request = new HashesRequest(files.values().stream().map(FileHashes::sha1).distinct().toList(), "sha1");
+        // The lookup only reads, so it is safe to retry even though it is a POST
+        HttpResponse<String> response = RetryPolicy.DEFAULT.call(VERSION_FILES, true, () -> {
+            HttpResponse<String> result = Http.send(Http.request(VERSION_FILES.toString())
+                    .header("Accept", "application/json")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(HashesRequest.gson.toJson(request))), RATE_LIMIT);
+
+            // Unknown hashes are simply left out of a 200 response, anything else is a failed lookup rather than a miss
+            if (result.statusCode() != 200) {
+                throw new Http.StatusException(result.statusCode(), "Modrinth API returned HTTP " + result.statusCode());
+            }
+            return result;
+        });
+        if (response.body().isEmpty()) return mods;
+        Map<String, Response> versions = Response.gson.fromJson(response.body(), new TypeToken<Map<String, Response>>(){}.getType());
+        for (Map.Entry<File, FileHashes> file : files.entrySet()) {
+            String sha1 = file.getValue().sha1();
+            @Nullable Response version = versions.get(sha1);
+            if (version == null || version.getFiles().isEmpty()) continue;
 
-        HttpClient client = HttpClient.newHttpClient();
-        String url = "https://api.modrinth.com/v2/version_file/" + sha1;
-        HttpResponse<String> response = client.sendAsync(
-                HttpRequest.newBuilder().uri(URI.create(url)).build(),
-                HttpResponse.BodyHandlers.ofString()
-        ).join();
-        client.close();
-        if (response == null || response.body().isEmpty() || response.statusCode() != 200) return null;
-        Response modrinthResponse = Response.gson.fromJson(response.body(), Response.class);
-        Manifest.Mod mod = new Manifest.Mod();
-        mod.setPath(file.getPath());
-        mod.setUrl(modrinthResponse.getFiles().getFirst().getUrl());
-        mod.setSource(Manifest.Source.MODRINTH);
-        mod.setSha1(sha1);
-        return mod;
+            Manifest.Mod mod = new Manifest.Mod();
+            mod.setPath(file.getKey().getPath());
+            mod.setUrl(version.getFileUrl(sha1));
+            mod.setSource(Manifest.Source.MODRINTH);
+            mod.setSha1(sha1);
+            mods.put(file.getKey(), mod);
+        }
+        return mods;
     }
 
-    public static @Nullable String createSha1(File file) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-1");
-            FileInputStream fis = new FileInputStream(file);
-            byte[] byteArray = new byte[1024];
-            int bytesCount;
+    @EqualsAndHashCode(callSuper = true)
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    private static class HashesRequest extends TypeAdapter<HashesRequest> {
+        public static final Gson gson = new GsonBuilder()
+                .registerTypeAdapter(HashesRequest.class, new HashesRequest())
+                .create();
+
+        private List<String> hashes = new ArrayList<>();
+        private String algorithm;
 
-            while ((bytesCount = fis.read(byteArray)) != -1) {
-                digest.update(byteArray, 0, bytesCount);
+        @Override
+        public void write(JsonWriter out, HashesRequest value) throws IOException {
+            out.beginObject();
+            out.name("hashes");
+            out.beginArray();
+            for (String hash : value.getHashes()) {
+                out.value(hash);
             }
-            fis.close();
+            out.endArray();
+            out.name("algorithm").value(value.getAlgorithm());
+            out.endObject();
+        }
 
-            StringBuilder sb = new StringBuilder();
-            for (byte b : digest.digest()) {
-                sb.append(String.format("%02x", b));
+        @Override
+        public HashesRequest read(JsonReader in) throws IOException {
+            HashesRequest request = new HashesRequest();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (name.equals("hashes")) {
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        request.getHashes().add(in.nextString());
+                    }
+                    in.endArray();
+                } else if (name.equals("algorithm")) {
+                    request.setAlgorithm(in.nextString());
+                } else {
+                    in.skipValue();
+                }
             }
-            return sb.toString();
-        } catch (Exception e) {
-            log.error("Error creating SHA-1 hash", e);
-            return null;
+            in.endObject();
+            return request;
         }
     }
 
@@ -84,6 +126,14 @@ public final class Modrinth {
 
         private List<Files> files = new ArrayList<>();
 
+        public String getFileUrl(String sha1) {
+            return files.stream()
+                    .filter(file -> sha1.equalsIgnoreCase(file.getSha1()))
+                    .findFirst()
+                    .orElse(files.getFirst())
+                    .getUrl();
+        }
+
         @Override
         public void write(JsonWriter out, Response value) throws IOException {
             out.beginObject();
@@ -92,6 +142,12 @@ public final class Modrinth {
             for (Files file : value.getFiles()) {
                 out.beginObject();
                 out.name("url").value(file.getUrl());
+                if (file.getSha1() != null) {
+                    out.name("hashes");
+                    out.beginObject();
+                    out.name("sha1").value(file.getSha1());
+                    out.endObject();
+                }
                 out.endObject();
             }
             out.endArray();
@@ -113,6 +169,16 @@ public final class Modrinth {
                             String fieldName = in.nextName();
                             if (fieldName.equals("url")) {
                                 file.setUrl(in.nextString());
+                            } else if (fieldName.equals("hashes")) {
+                                in.beginObject();
+                                while (in.hasNext()) {
+                                    if (in.nextName().equals("sha1")) {
+                                        file.setSha1(in.nextString());
+                                    } else {
+                                        in.skipValue();
+                                    }
+                                }
+                                in.endObject();
                             } else {
                                 in.skipValue();
                             }
@@ -134,6 +200,7 @@ public final class Modrinth {
         @NoArgsConstructor
         public static class Files {
             private String url;
+            private String sha1;
         }
     }
 }
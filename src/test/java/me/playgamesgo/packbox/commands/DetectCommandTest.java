@@ -0,0 +1,82 @@
+package me.playgamesgo.packbox.commands;
+
+import me.playgamesgo.packbox.utils.Manifest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DetectCommandTest {
+    @Test
+    void insertsNewFilesInFolderListingOrder() {
+        Manifest.Mod a = mod("mods/a.jar");
+        Manifest.Mod c = mod("mods/c.jar");
+        Manifest.Mod b = mod("mods/b.jar");
+        Manifest.Mod d = mod("mods/d.jar");
+
+        List<Manifest.Mod> patched = DetectCommand.patch(List.of(a, c), current(a, b, c, d), order(a, b, c, d),
+                List.of("mods"), removed -> {});
+
+        assertEquals(List.of(a, b, c, d), patched);
+    }
+
+    @Test
+    void keepsEntriesOutsideTheDetectedFolders() {
+        Manifest.Mod pack = mod("resourcepacks/pack.zip");
+        Manifest.Mod shader = mod("shaderpacks/shader.zip");
+        Manifest.Mod a = mod("mods/a.jar");
+        Manifest.Mod b = mod("mods/b.jar");
+
+        List<Manifest.Mod> patched = DetectCommand.patch(List.of(pack, b, shader), current(a, b), order(a, b),
+                List.of("mods"), removed -> {});
+
+        assertEquals(List.of(pack, a, b, shader), patched);
+    }
+
+    @Test
+    void replacesUpdatedEntriesInPlace() {
+        Manifest.Mod a = mod("mods/a.jar");
+        Manifest.Mod b = mod("mods/b.jar");
+        Manifest.Mod updated = new Manifest.Mod("mods/a.jar", "https://example.com/updated", Manifest.Source.MODRINTH, "updated");
+
+        List<Manifest.Mod> patched = DetectCommand.patch(List.of(a, b), current(updated, b), order(a, b),
+                List.of("mods"), removed -> {});
+
+        assertEquals(List.of(updated, b), patched);
+    }
+
+    @Test
+    void reportsEntriesWhoseFilesAreGone() {
+        Manifest.Mod a = mod("mods/a.jar");
+        Manifest.Mod gone = mod("mods/gone.jar");
+        Manifest.Mod pack = mod("resourcepacks/pack.zip");
+        List<Manifest.Mod> removed = new ArrayList<>();
+
+        List<Manifest.Mod> patched = DetectCommand.patch(List.of(gone, a, pack), current(a), order(a),
+                List.of("mods", "resourcepacks"), removed::add);
+
+        assertEquals(List.of(a), patched);
+        assertEquals(List.of(gone, pack), removed);
+    }
+
+    private static Manifest.Mod mod(String path) {
+        return new Manifest.Mod(path, "https://example.com/" + path, Manifest.Source.MODRINTH, path);
+    }
+
+    private static Map<String, Manifest.Mod> current(Manifest.Mod... mods) {
+        Map<String, Manifest.Mod> current = new HashMap<>();
+        for (Manifest.Mod mod : mods) current.put(mod.getPath(), mod);
+        return current;
+    }
+
+    // The order detect listed the files in
+    private static Map<String, Integer> order(Manifest.Mod... mods) {
+        Map<String, Integer> order = new HashMap<>();
+        for (Manifest.Mod mod : mods) order.put(mod.getPath(), order.size());
+        return order;
+    }
+}
@@ -0,0 +1,101 @@
+package me.playgamesgo.packbox.utils.download;
+
+import me.playgamesgo.packbox.utils.Manifest;
+import me.playgamesgo.packbox.utils.StateIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InstallPlanTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void plansAddKeepAndReplace() throws IOException {
+        write("mods/kept.jar", "kept");
+        write("mods/changed.jar", "old");
+        List<Manifest.Mod> mods = List.of(mod("mods/added.jar", "added"), mod("mods/kept.jar", "kept"), mod("mods/changed.jar", "new"));
+
+        InstallPlan plan = InstallPlan.create(mods, new StateIndex(), false);
+
+        assertEquals(List.of(InstallPlan.Action.ADD, InstallPlan.Action.KEEP, InstallPlan.Action.REPLACE),
+                plan.getSteps().stream().map(InstallPlan.Step::action).toList());
+        assertEquals(List.of(mods.get(0), mods.get(2)), plan.getDownloads());
+    }
+
+    @Test
+    void matchesUppercaseHashes() throws IOException {
+        write("mods/kept.jar", "kept");
+        Manifest.Mod mod = mod("mods/kept.jar", "kept");
+        mod.setSha1(mod.getSha1().toUpperCase());
+
+        InstallPlan plan = InstallPlan.create(List.of(mod), new StateIndex(), false);
+
+        assertEquals(InstallPlan.Action.KEEP, plan.getSteps().get(0).action());
+    }
+
+    @Test
+    void leavesStaleFilesWithoutPrune() throws IOException {
+        write("mods/stale.jar", "stale");
+
+        InstallPlan plan = InstallPlan.create(List.of(mod("mods/kept.jar", "kept")), new StateIndex(), false);
+
+        assertTrue(plan.getSteps(InstallPlan.Action.DELETE).isEmpty());
+    }
+
+    @Test
+    void prunesOnlyFoldersInTheManifest() throws IOException {
+        write("mods/kept.jar", "kept");
+        write("mods/stale-b.jar", "stale");
+        write("mods/stale-a.jar", "stale");
+        write("mods/kept.jar.part", "partial");
+        write("mods/kept.jar.part.meta", "partial");
+        write("mods/added.jar.link.tmp", "staged");
+        write("mods/nested/other.jar", "nested");
+        write("config/settings.toml", "unmanaged");
+        write("resourcepacks/pack.zip", "unmanaged");
+        List<Manifest.Mod> mods = List.of(mod("mods/kept.jar", "kept"), mod("mods/added.jar", "added"),
+                mod("shaderpacks/missing.zip", "missing"));
+
+        InstallPlan plan = InstallPlan.create(mods, new StateIndex(), true);
+
+        assertEquals(List.of(path("mods/stale-a.jar"), path("mods/stale-b.jar")),
+                plan.getSteps(InstallPlan.Action.DELETE).stream().map(InstallPlan.Step::path).toList());
+        assertEquals(List.of(InstallPlan.Action.KEEP, InstallPlan.Action.ADD, InstallPlan.Action.ADD),
+                plan.getSteps().subList(0, 3).stream().map(InstallPlan.Step::action).toList());
+    }
+
+    private Manifest.Mod mod(String path, String content) {
+        return new Manifest.Mod(path(path), "https://example.com/" + path, Manifest.Source.NONE, sha1(content));
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = directory.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    private String path(String path) {
+        return directory.resolve(path).normalize().toString().replace(File.separatorChar, '/');
+    }
+
+    private static String sha1(String content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
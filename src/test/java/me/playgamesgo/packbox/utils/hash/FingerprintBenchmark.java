@@ -0,0 +1,65 @@
+package me.playgamesgo.packbox.utils.hash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+// Compares the fingerprint against the byte at a time reference, run with: ./gradlew fingerprintBenchmark
+public final class FingerprintBenchmark {
+    private static final int WARMUP = 3;
+
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        // Jars are compressed, so random bytes with the odd run of whitespace are close to what detect hashes
+        byte[] data = new byte[megabytes << 20];
+        new Random(1).nextBytes(data);
+        ByteBuffer heap = ByteBuffer.wrap(data);
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length).put(data).flip();
+        Path file = Files.createTempFile("packbox-fingerprint", ".bin");
+        Files.write(file, data);
+
+        try {
+            System.out.printf(Locale.ROOT, "%d MiB, %d iterations after %d warmup runs%n", megabytes, iterations, WARMUP);
+            run("reference byte[]", data.length, iterations, () -> Integer.toUnsignedLong(FingerprintTest.reference(data)));
+            run("Fingerprint heap buffer", data.length, iterations, () -> fingerprint(heap));
+            run("Fingerprint direct buffer", data.length, iterations, () -> fingerprint(direct));
+            run("FileHasher.fingerprint", data.length, iterations, () -> FileHasher.fingerprint(file));
+            run("FileHasher.hash (all three)", data.length, iterations, () -> FileHasher.hash(file).fingerprint());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static long fingerprint(ByteBuffer buffer) {
+        Fingerprint fingerprint = new Fingerprint(Fingerprint.countNonWhitespace(buffer.duplicate()));
+        fingerprint.update(buffer.duplicate());
+        return fingerprint.finish();
+    }
+
+    private static void run(String name, long bytes, int iterations, Measured measured) throws IOException {
+        long result = 0;
+        for (int i = 0; i < WARMUP; i++) result += measured.run();
+
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            result += measured.run();
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+        // Printing the combined results keeps the JIT from dropping the work as unused
+        System.out.printf(Locale.ROOT, "%-28s best %6.2f GB/s  mean %6.2f GB/s  (%x)%n",
+                name, bytes / (double) best, bytes * (double) iterations / total, result);
+    }
+
+    private interface Measured {
+        long run() throws IOException;
+    }
+}
@@ -0,0 +1,130 @@
+package me.playgamesgo.packbox.utils.hash;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FingerprintTest {
+    private static final int BUFFER_SIZE = 4 << 20;
+
+    @TempDir
+    Path directory;
+
+    static Stream<Arguments> files() {
+        int[] sizes = {0, 1, 3, 7, 8, 9, 15, 16, 17, 4096, BUFFER_SIZE - 1, BUFFER_SIZE, BUFFER_SIZE + 1, BUFFER_SIZE + 7,
+                2 * BUFFER_SIZE + 3};
+        Stream.Builder<Arguments> files = Stream.builder();
+        for (int size : sizes) {
+            files.add(Arguments.of("random", size));
+            files.add(Arguments.of("whitespace", size));
+            files.add(Arguments.of("blank", size));
+        }
+        return files.build();
+    }
+
+    @ParameterizedTest(name = "{0} {1}")
+    @MethodSource("files")
+    void matchesReferenceForFiles(String content, int size) throws IOException {
+        byte[] data = generate(content, size);
+        Path file = directory.resolve(content + "-" + size);
+        Files.write(file, data);
+
+        long expected = Integer.toUnsignedLong(reference(data));
+        assertEquals(expected, FileHasher.fingerprint(file));
+
+        FileHashes hashes = FileHasher.hash(file);
+        assertEquals(expected, hashes.fingerprint());
+        assertEquals(HexFormat.of().formatHex(digest("SHA-1").digest(data)), hashes.sha1());
+        assertEquals(HexFormat.of().formatHex(digest("SHA-512").digest(data)), hashes.sha512());
+    }
+
+    @Test
+    void matchesReferenceForUnalignedChunks() {
+        byte[] data = generate("whitespace", 100_003);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        Random random = new Random(7);
+
+        Fingerprint fingerprint = new Fingerprint(Fingerprint.countNonWhitespace(buffer.duplicate()));
+        for (int position = 0; position < data.length; ) {
+            int length = Math.min(data.length - position, random.nextInt(40));
+            fingerprint.update(buffer.duplicate().position(position).limit(position + length));
+            position += length;
+        }
+        assertEquals(Integer.toUnsignedLong(reference(data)), fingerprint.finish());
+    }
+
+    private static byte[] generate(String content, int size) {
+        Random random = new Random(size);
+        byte[] data = new byte[size];
+        byte[] whitespace = {9, 10, 13, 32};
+        for (int i = 0; i < size; i++) {
+            data[i] = switch (content) {
+                case "blank" -> whitespace[random.nextInt(whitespace.length)];
+                case "whitespace" -> random.nextInt(3) == 0 ? (byte) random.nextInt(256) : whitespace[random.nextInt(whitespace.length)];
+                default -> (byte) random.nextInt(256);
+            };
+        }
+        return data;
+    }
+
+    // The byte at a time implementation detect used before the hashing was streamed, FingerprintBenchmark measures against it
+    static int reference(byte[] buffer) {
+        final int multiplex = 1540483477;
+
+        int num1 = 0;
+        for (byte b : buffer) {
+            if (!isWhitespaceCharacter(b)) ++num1;
+        }
+        int num2 = 1 ^ num1;
+        int num3 = 0;
+        int num4 = 0;
+
+        for (byte b : buffer) {
+            if (!isWhitespaceCharacter(b)) {
+                num3 |= (b & 0xFF) << num4;
+                num4 += 8;
+                if (num4 == 32) {
+                    int num6 = num3 * multiplex;
+                    int num7 = (num6 ^ (num6 >>> 24)) * multiplex;
+
+                    num2 = (num2 * multiplex) ^ num7;
+                    num3 = 0;
+                    num4 = 0;
+                }
+            }
+        }
+
+        if (num4 > 0) {
+            num2 = (num2 ^ num3) * multiplex;
+        }
+
+        int num6 = (num2 ^ (num2 >>> 13)) * multiplex;
+        return num6 ^ (num6 >>> 15);
+    }
+
+    private static boolean isWhitespaceCharacter(byte b) {
+        return b == 9 || b == 10 || b == 13 || b == 32;
+    }
+
+    private static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}